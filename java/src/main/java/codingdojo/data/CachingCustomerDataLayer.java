@@ -0,0 +1,209 @@
+package codingdojo.data;
+
+import codingdojo.model.Customer;
+import codingdojo.model.CustomerSnapshot;
+import codingdojo.model.ShoppingList;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Two-tier cache in front of the customer lookups of a {@link CustomerDataLayer}.
+ * <p>
+ * The first tier is a small on-heap LRU of decoded, immutable {@link CustomerSnapshot}s, so a
+ * hit costs no decoding and the entry can be shared by every caller. The second tier is a
+ * {@link SharedCustomerCache} that other JVMs on the host read and fill as well, so a freshly
+ * started worker is warm as soon as its neighbours are. Both tiers check the shared version
+ * stamps on every hit, so {@link #updateCustomerRecord} in any process invalidates them.
+ * Lookups always return a fresh {@link Customer} instance that the caller may modify.
+ * <p>
+ * Updates write through: the record as written is cached under each of its keys, so the lookups
+ * that follow a sync of the same customer are hits rather than misses on a just-invalidated
+ * entry. This assumes the store answers a lookup with the row last written under that key, as
+ * a unique or last-write-wins index does.
+ * <p>
+ * Every writer to the store must go through a {@code CachingCustomerDataLayer} on the same
+ * cache file, otherwise its updates are not seen until the cached records reach their maximum
+ * age. That age bounds how stale a bypassed write can leave a lookup.
+ */
+public class CachingCustomerDataLayer implements CustomerDataLayer {
+
+    public static final int DEFAULT_HEAP_ENTRIES = 1_024;
+    public static final Duration DEFAULT_MAX_AGE = Duration.ofMinutes(5);
+
+    private static final String EXTERNAL_ID = "E:";
+    private static final String MASTER_EXTERNAL_ID = "M:";
+    private static final String COMPANY_NUMBER = "C:";
+
+    private final CustomerDataLayer customerDataLayer;
+    private final SharedCustomerCache sharedCache;
+    private final Map<String, CachedCustomer> heapCache;
+    private final long maxAgeMillis;
+
+    private final LongAdder heapHits = new LongAdder();
+    private final LongAdder sharedHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CachingCustomerDataLayer(CustomerDataLayer customerDataLayer, SharedCustomerCache sharedCache) {
+        this(customerDataLayer, sharedCache, DEFAULT_HEAP_ENTRIES);
+    }
+
+    public CachingCustomerDataLayer(CustomerDataLayer customerDataLayer, SharedCustomerCache sharedCache, int heapEntries) {
+        this(customerDataLayer, sharedCache, heapEntries, DEFAULT_MAX_AGE);
+    }
+
+    /**
+     * Creates the cache.
+     *
+     * @param customerDataLayer the store that misses are loaded from
+     * @param sharedCache the second tier, shared with the other processes on the host
+     * @param heapEntries the maximum number of records in the first tier
+     * @param maxAge how long after loading a record may be served from either tier
+     */
+    public CachingCustomerDataLayer(CustomerDataLayer customerDataLayer, SharedCustomerCache sharedCache, int heapEntries,
+                                    Duration maxAge) {
+        if (maxAge.isNegative() || maxAge.isZero()) {
+            throw new IllegalArgumentException("maxAge must be positive but was " + maxAge);
+        }
+        this.maxAgeMillis = maxAge.toMillis();
+        this.customerDataLayer = customerDataLayer;
+        this.sharedCache = sharedCache;
+        this.heapCache = Collections.synchronizedMap(new LinkedHashMap<String, CachedCustomer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedCustomer> eldest) {
+                return size() > heapEntries;
+            }
+        });
+    }
+
+    @Override
+    public Customer updateCustomerRecord(Customer customer) {
+        String internalId = customer.getInternalId();
+        if (internalId == null) {
+            return customerDataLayer.updateCustomerRecord(customer);
+        }
+
+        List<String> keys = keysOf(customer);
+        CustomerSnapshot written = CustomerSnapshot.of(customer);
+        Customer updated;
+        long epoch;
+        sharedCache.beginWrite(internalId);
+        try {
+            updated = customerDataLayer.updateCustomerRecord(customer);
+        } finally {
+            epoch = sharedCache.endWrite(internalId, keys);
+        }
+
+        byte[] payload = CustomerRecordIO.encode(written.toCustomer());
+        for (String key : keys) {
+            SharedCustomerCache.Entry entry = sharedCache.stamp(epoch, key, internalId, payload);
+            if (entry != null) {
+                sharedCache.put(key, entry);
+                heapCache.put(key, new CachedCustomer(written, entry));
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public Customer createCustomerRecord(Customer customer) {
+        // A new record has no internal id that could be cached yet, and misses are never cached
+        return customerDataLayer.createCustomerRecord(customer);
+    }
+
+    @Override
+    public void updateShoppingList(ShoppingList consumerShoppingList) {
+        customerDataLayer.updateShoppingList(consumerShoppingList);
+    }
+
+    @Override
+    public Customer findByExternalId(String externalId) {
+        return find(EXTERNAL_ID, externalId, customerDataLayer::findByExternalId);
+    }
+
+    @Override
+    public Customer findByMasterExternalId(String externalId) {
+        return find(MASTER_EXTERNAL_ID, externalId, customerDataLayer::findByMasterExternalId);
+    }
+
+    @Override
+    public Customer findByCompanyNumber(String companyNumber) {
+        return find(COMPANY_NUMBER, companyNumber, customerDataLayer::findByCompanyNumber);
+    }
+
+    public long getHeapHits() {
+        return heapHits.sum();
+    }
+
+    public long getSharedHits() {
+        return sharedHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private Customer find(String keyPrefix, String value, Function<String, Customer> lookup) {
+        if (value == null) {
+            return lookup.apply(null);
+        }
+        String key = keyPrefix + value;
+
+        CachedCustomer cached = heapCache.get(key);
+        if (cached != null) {
+            if (isFresh(cached.entry) && sharedCache.isCurrent(cached.entry)) {
+                heapHits.increment();
+                return cached.customer.toCustomer();
+            }
+            heapCache.remove(key);
+        }
+
+        SharedCustomerCache.Entry entry = sharedCache.get(key);
+        if (entry != null && isFresh(entry)) {
+            sharedHits.increment();
+            Customer customer = CustomerRecordIO.decode(entry.payload);
+            heapCache.put(key, new CachedCustomer(CustomerSnapshot.of(customer), entry));
+            return customer;
+        }
+
+        misses.increment();
+        long epoch = sharedCache.writeEpoch();
+        Customer customer = lookup.apply(value);
+        if (customer != null && customer.getInternalId() != null) {
+            entry = sharedCache.stamp(epoch, key, customer.getInternalId(), CustomerRecordIO.encode(customer));
+            if (entry != null) {
+                sharedCache.put(key, entry);
+                heapCache.put(key, new CachedCustomer(CustomerSnapshot.of(customer), entry));
+            }
+        }
+        return customer;
+    }
+
+    private static List<String> keysOf(Customer customer) {
+        List<String> keys = new ArrayList<>();
+        if (customer.getExternalId() != null) keys.add(EXTERNAL_ID + customer.getExternalId());
+        if (customer.getMasterExternalId() != null) keys.add(MASTER_EXTERNAL_ID + customer.getMasterExternalId());
+        if (customer.getCompanyNumber() != null) keys.add(COMPANY_NUMBER + customer.getCompanyNumber());
+        return keys;
+    }
+
+    private boolean isFresh(SharedCustomerCache.Entry entry) {
+        return System.currentTimeMillis() - entry.loadedAtMillis < maxAgeMillis;
+    }
+
+    /**
+     * A decoded customer together with the stamp it was cached under.
+     */
+    @RequiredArgsConstructor
+    private static final class CachedCustomer {
+        private final CustomerSnapshot customer;
+        private final SharedCustomerCache.Entry entry;
+    }
+}
@@ -0,0 +1,38 @@
+package codingdojo.data;
+
+import codingdojo.model.Customer;
+
+/**
+ * The customer writes made to a store, numbered in the order they were made, whichever process
+ * made them. Caches that only ever learn about a key when it is written, such as
+ * {@link CustomerKeyFilter}, subscribe to it to hear about writers they did not see.
+ */
+public interface CustomerChangeLog {
+
+    /**
+     * Receives the customers written to the store.
+     */
+    interface ChangeListener {
+
+        /**
+         * @param sequence the sequence number of the write
+         * @param customer the customer as it was written
+         */
+        void changed(long sequence, Customer customer);
+    }
+
+    /**
+     * Hands the listener the customers written after the given sequence number, oldest first,
+     * and then every later write as it is made, until the returned action is run. A write whose
+     * row was written again afterwards may be left out, as the later write is handed over.
+     * <p>
+     * A log should hand a write over before it is visible to lookups, as an in-process store can
+     * by calling the listener on the writing thread; listeners must therefore be quick. A log fed
+     * from another process hands writes over as they arrive instead.
+     *
+     * @param sinceSequence the sequence number of the last write already seen, or 0 for none
+     * @param listener receives the writes
+     * @return the action that ends the subscription
+     */
+    Runnable subscribe(long sinceSequence, ChangeListener listener);
+}
@@ -0,0 +1,216 @@
+package codingdojo.data;
+
+import codingdojo.model.Customer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over the externalIds, masterExternalIds and companyNumbers present in the store.
+ * <p>
+ * A negative answer is definite, so a lookup for that key can be skipped; a positive answer
+ * may be false at roughly the configured rate. Keys are only ever added, so customers whose
+ * ids change leave stale positives behind, which cost a lookup but never a wrong answer.
+ * Adding and querying are thread-safe. The filter can be saved to a file and loaded again at
+ * startup instead of being rebuilt from the store.
+ * <p>
+ * A filter only knows the keys added to it, so it also keeps a watermark: the
+ * {@link CustomerChangeLog} sequence number up to which every written customer has been added.
+ * The watermark is saved with the filter, and a loaded filter catches up by subscribing to the
+ * changes after it, see {@link FilteredCustomerDataLayer}.
+ */
+public class CustomerKeyFilter {
+
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    private static final int MAGIC = 0x434b4646;
+    private static final int FORMAT_VERSION = 2;
+    private static final int FORMAT_VERSION_WITHOUT_WATERMARK = 1;
+    private static final int KEYS_PER_CUSTOMER = 3;
+
+    private static final char EXTERNAL_ID = 'E';
+    private static final char MASTER_EXTERNAL_ID = 'M';
+    private static final char COMPANY_NUMBER = 'C';
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashFunctions;
+    private final AtomicLong watermark;
+
+    private CustomerKeyFilter(AtomicLongArray bits, int hashFunctions, long watermark) {
+        this.bits = bits;
+        this.bitCount = (long) bits.length() * Long.SIZE;
+        this.hashFunctions = hashFunctions;
+        this.watermark = new AtomicLong(watermark);
+    }
+
+    public static CustomerKeyFilter create(int expectedCustomers) {
+        return create(expectedCustomers, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Creates an empty filter sized for the expected number of customers.
+     *
+     * @param expectedCustomers how many customers the store will hold
+     * @param falsePositiveRate the acceptable chance that an absent key is reported as present
+     * @return the empty filter
+     */
+    public static CustomerKeyFilter create(int expectedCustomers, double falsePositiveRate) {
+        if (expectedCustomers < 1) {
+            throw new IllegalArgumentException("expectedCustomers must be positive but was " + expectedCustomers);
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1 but was " + falsePositiveRate);
+        }
+        long expectedKeys = (long) expectedCustomers * KEYS_PER_CUSTOMER;
+        long optimalBits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        long words = (optimalBits + Long.SIZE - 1) / Long.SIZE;
+        if (words > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Filter for " + expectedCustomers + " customers is too large");
+        }
+        int hashFunctions = Math.max(1, (int) Math.round((double) words * Long.SIZE / expectedKeys * Math.log(2)));
+        return new CustomerKeyFilter(new AtomicLongArray((int) words), hashFunctions, 0);
+    }
+
+    /**
+     * Loads a saved filter. Files written before the watermark was saved load with a watermark
+     * of 0, so that every change is replayed.
+     */
+    public static CustomerKeyFilter load(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int magic = in.readInt();
+            int formatVersion = in.readInt();
+            if (magic != MAGIC || (formatVersion != FORMAT_VERSION && formatVersion != FORMAT_VERSION_WITHOUT_WATERMARK)) {
+                throw new IllegalStateException("File " + file + " does not hold a customer key filter");
+            }
+            long watermark = formatVersion == FORMAT_VERSION ? in.readLong() : 0;
+            int hashFunctions = in.readInt();
+            AtomicLongArray bits = new AtomicLongArray(in.readInt());
+            for (int i = 0; i < bits.length(); i++) {
+                bits.set(i, in.readLong());
+            }
+            return new CustomerKeyFilter(bits, hashFunctions, watermark);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Saves the filter while it is in use. The watermark is read before the bits are copied, so
+     * every change up to the saved watermark is in the saved bits even if keys are being added
+     * meanwhile; keys added during the save are replayed after loading.
+     * <p>
+     * The filter is written to a temporary file next to {@code file} and then moved over it, so
+     * a crash during the save leaves the previous file intact rather than a truncated one.
+     */
+    public void save(Path file) {
+        long savedWatermark = watermark.get();
+        Path directory = file.toAbsolutePath().getParent();
+        try {
+            Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try {
+                try (FileOutputStream stream = new FileOutputStream(temporary.toFile());
+                     DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeLong(savedWatermark);
+                    out.writeInt(hashFunctions);
+                    out.writeInt(bits.length());
+                    for (int i = 0; i < bits.length(); i++) {
+                        out.writeLong(bits.get(i));
+                    }
+                    out.flush();
+                    stream.getFD().sync();
+                }
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long getWatermark() {
+        return watermark.get();
+    }
+
+    /**
+     * Records that every change up to the given sequence number has been added. The watermark
+     * never moves backwards.
+     */
+    public void advanceWatermark(long sequence) {
+        watermark.accumulateAndGet(sequence, Math::max);
+    }
+
+    public void add(Customer customer) {
+        if (customer.getExternalId() != null) put(EXTERNAL_ID, customer.getExternalId());
+        if (customer.getMasterExternalId() != null) put(MASTER_EXTERNAL_ID, customer.getMasterExternalId());
+        if (customer.getCompanyNumber() != null) put(COMPANY_NUMBER, customer.getCompanyNumber());
+    }
+
+    public boolean mightContainExternalId(String externalId) {
+        return mightContain(EXTERNAL_ID, externalId);
+    }
+
+    public boolean mightContainMasterExternalId(String externalId) {
+        return mightContain(MASTER_EXTERNAL_ID, externalId);
+    }
+
+    public boolean mightContainCompanyNumber(String companyNumber) {
+        return mightContain(COMPANY_NUMBER, companyNumber);
+    }
+
+    private void put(char keyType, String key) {
+        long hash1 = hash(keyType, key);
+        long hash2 = mix(hash1 ^ 0x9e3779b97f4a7c15L);
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+            } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    private boolean mightContain(char keyType, String key) {
+        long hash1 = hash(keyType, key);
+        long hash2 = mix(hash1 ^ 0x9e3779b97f4a7c15L);
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(char keyType, String key) {
+        // FNV-1a over the key type and characters, finished with a strong mixer
+        long hash = (0xcbf29ce484222325L ^ keyType) * 0x100000001b3L;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,78 @@
+package codingdojo.data;
+
+import codingdojo.model.Customer;
+import codingdojo.model.CustomerType;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static codingdojo.data.RecordFieldIO.readAddress;
+import static codingdojo.data.RecordFieldIO.readNullableString;
+import static codingdojo.data.RecordFieldIO.readShoppingLists;
+import static codingdojo.data.RecordFieldIO.writeAddress;
+import static codingdojo.data.RecordFieldIO.writeNullableString;
+import static codingdojo.data.RecordFieldIO.writeShoppingLists;
+
+/**
+ * Compact binary encoding of {@link Customer} records used by the lookup caches.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class CustomerRecordIO {
+
+    static byte[] encode(Customer customer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out, customer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Customer decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            return read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void write(DataOutput out, Customer customer) throws IOException {
+        writeNullableString(out, customer.getInternalId());
+        writeNullableString(out, customer.getExternalId());
+        writeNullableString(out, customer.getMasterExternalId());
+        writeNullableString(out, customer.getCompanyNumber());
+        writeNullableString(out, customer.getName());
+        writeNullableString(out, customer.getPreferredStore());
+        writeNullableString(out, customer.getCustomerType() == null ? null : customer.getCustomerType().name());
+        out.writeInt(customer.getBonusPointsBalance());
+
+        writeAddress(out, customer.getAddress());
+        writeShoppingLists(out, customer.getShoppingLists());
+    }
+
+    private static Customer read(DataInput in) throws IOException {
+        Customer customer = new Customer();
+        customer.setInternalId(readNullableString(in));
+        customer.setExternalId(readNullableString(in));
+        customer.setMasterExternalId(readNullableString(in));
+        customer.setCompanyNumber(readNullableString(in));
+        customer.setName(readNullableString(in));
+        customer.setPreferredStore(readNullableString(in));
+        String customerType = readNullableString(in);
+        customer.setCustomerType(customerType == null ? null : CustomerType.valueOf(customerType));
+        customer.setBonusPointsBalance(in.readInt());
+
+        customer.setAddress(readAddress(in));
+        customer.setShoppingLists(readShoppingLists(in));
+        return customer;
+    }
+}
@@ -0,0 +1,88 @@
+package codingdojo.data;
+
+import codingdojo.model.Customer;
+import codingdojo.model.ShoppingList;
+
+import java.io.Closeable;
+
+/**
+ * Answers lookups for keys a {@link CustomerKeyFilter} knows to be absent without asking the
+ * store, so the {@link CustomerDataAccess} lookups for brand-new customers cost no round trips.
+ * <p>
+ * Writes add the customer's keys to the filter before they reach the store, so a concurrent
+ * lookup never misses a customer that has already been written through this instance. Every
+ * other writer, including other processes and instances with their own filter, must appear in
+ * the {@link CustomerChangeLog}. The layer subscribes to it from the filter's watermark, so a
+ * filter loaded from an old file first catches up with the writes it missed, and then adds
+ * every write the log hands over. A negative lookup is therefore only a check of the filter's
+ * bits, with no round trip and no lock.
+ * <p>
+ * Its answers are as current as the change log. A log that hands writes over before they are
+ * visible, as an in-process store does, never lets a written key be reported absent. A log fed
+ * from another process delivers with a delay, and for that long a lookup for a key that only
+ * such a write added may wrongly answer that it is absent. The staleness is bounded by the
+ * log's delivery delay, so feeds that must see each other's customers at once should write
+ * through one store whose log delivers in-process.
+ * <p>
+ * Close the layer to stop following the change log.
+ */
+public class FilteredCustomerDataLayer implements CustomerDataLayer, Closeable {
+
+    private final CustomerDataLayer customerDataLayer;
+    private final CustomerKeyFilter keyFilter;
+    private final Runnable unsubscribe;
+
+    public FilteredCustomerDataLayer(CustomerDataLayer customerDataLayer, CustomerKeyFilter keyFilter,
+                                     CustomerChangeLog changeLog) {
+        this.customerDataLayer = customerDataLayer;
+        this.keyFilter = keyFilter;
+        this.unsubscribe = changeLog.subscribe(keyFilter.getWatermark(), (sequence, customer) -> {
+            keyFilter.add(customer);
+            keyFilter.advanceWatermark(sequence);
+        });
+    }
+
+    @Override
+    public Customer updateCustomerRecord(Customer customer) {
+        keyFilter.add(customer);
+        return customerDataLayer.updateCustomerRecord(customer);
+    }
+
+    @Override
+    public Customer createCustomerRecord(Customer customer) {
+        keyFilter.add(customer);
+        Customer created = customerDataLayer.createCustomerRecord(customer);
+        if (created != null && created != customer) {
+            keyFilter.add(created);
+        }
+        return created;
+    }
+
+    @Override
+    public void updateShoppingList(ShoppingList consumerShoppingList) {
+        customerDataLayer.updateShoppingList(consumerShoppingList);
+    }
+
+    @Override
+    public Customer findByExternalId(String externalId) {
+        if (externalId != null && !keyFilter.mightContainExternalId(externalId)) return null;
+        return customerDataLayer.findByExternalId(externalId);
+    }
+
+    @Override
+    public Customer findByMasterExternalId(String externalId) {
+        if (externalId != null && !keyFilter.mightContainMasterExternalId(externalId)) return null;
+        return customerDataLayer.findByMasterExternalId(externalId);
+    }
+
+    @Override
+    public Customer findByCompanyNumber(String companyNumber) {
+        if (companyNumber != null && !keyFilter.mightContainCompanyNumber(companyNumber)) return null;
+        return customerDataLayer.findByCompanyNumber(companyNumber);
+    }
+
+    @Override
+    public void close() {
+        unsubscribe.run();
+    }
+}
@@ -0,0 +1,73 @@
+package codingdojo.data;
+
+import codingdojo.model.Address;
+import codingdojo.model.ShoppingList;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding of the fields shared by the customer record codecs, so that cache entries
+ * and spill files encode strings, addresses and shopping lists the same way.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class RecordFieldIO {
+
+    public static void writeNullableString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    public static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    public static void writeAddress(DataOutput out, Address address) throws IOException {
+        out.writeBoolean(address != null);
+        if (address != null) {
+            writeNullableString(out, address.getStreet());
+            writeNullableString(out, address.getCity());
+            writeNullableString(out, address.getPostalCode());
+        }
+    }
+
+    public static Address readAddress(DataInput in) throws IOException {
+        if (!in.readBoolean()) return null;
+        return new Address(readNullableString(in), readNullableString(in), readNullableString(in));
+    }
+
+    public static void writeShoppingLists(DataOutput out, List<ShoppingList> shoppingLists) throws IOException {
+        out.writeInt(shoppingLists == null ? -1 : shoppingLists.size());
+        if (shoppingLists != null) {
+            for (ShoppingList shoppingList : shoppingLists) {
+                List<String> products = shoppingList.getProducts();
+                out.writeInt(products.size());
+                for (String product : products) {
+                    writeNullableString(out, product);
+                }
+            }
+        }
+    }
+
+    public static List<ShoppingList> readShoppingLists(DataInput in) throws IOException {
+        int shoppingListCount = in.readInt();
+        if (shoppingListCount < 0) return null;
+
+        List<ShoppingList> shoppingLists = new ArrayList<>(shoppingListCount);
+        for (int i = 0; i < shoppingListCount; i++) {
+            String[] products = new String[in.readInt()];
+            for (int p = 0; p < products.length; p++) {
+                products[p] = readNullableString(in);
+            }
+            shoppingLists.add(new ShoppingList(products));
+        }
+        return shoppingLists;
+    }
+}
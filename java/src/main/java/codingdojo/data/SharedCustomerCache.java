@@ -0,0 +1,319 @@
+package codingdojo.data;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.zip.CRC32;
+
+/**
+ * Second-level customer cache held in a memory-mapped file that every JVM on a host can share.
+ * <p>
+ * The file holds a table of version stamps and a direct-mapped table of cached lookup results.
+ * Every write through {@link #beginWrite}/{@link #endWrite} takes the next value of a write
+ * counter and stores it as the version of its customer's bucket, hashed by internal id, and of
+ * the buckets of every lookup key the written record has. A cached record carries the versions
+ * of its customer's bucket and of its key's bucket, so a write in any process that changes the
+ * customer, or gives the key to another customer, invalidates it. A record loaded from the store
+ * is only cached if neither bucket was written since the load started, so unrelated writes
+ * racing the load do not keep it out of the cache. Readers never
+ * lock: slots are written under a sequence number and a read that races a write is a miss.
+ * Plain reads of the mapping give no ordering guarantee between processes, so every slot also
+ * carries a checksum over its fields and a read is only decoded if the checksum matches.
+ * Writers serialize on a file lock over the header, so each JVM should open a file only once.
+ */
+public class SharedCustomerCache implements Closeable {
+
+    public static final int DEFAULT_SLOT_COUNT = 1 << 16;
+    public static final int DEFAULT_SLOT_SIZE = 512;
+    public static final int DEFAULT_STAMP_BUCKETS = 1 << 16;
+
+    private static final int MAGIC = 0x43535943;
+    private static final int LAYOUT_VERSION = 5;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int LAYOUT_VERSION_OFFSET = 4;
+    private static final int STAMP_BUCKETS_OFFSET = 8;
+    private static final int SLOT_COUNT_OFFSET = 12;
+    private static final int SLOT_SIZE_OFFSET = 16;
+    private static final int WRITE_EPOCH_OFFSET = 24;
+
+    // Each stamp bucket holds the version of the customers hashed to it, then that of the keys
+    private static final int STAMP_BUCKET_SIZE = 16;
+    private static final int KEY_VERSION = 8;
+
+    private static final int SLOT_SEQUENCE = 0;
+    private static final int SLOT_BUCKET = 8;
+    private static final int SLOT_CHECKSUM = 12;
+    private static final int SLOT_STAMP = 16;
+    private static final int SLOT_KEY_STAMP = 24;
+    private static final int SLOT_LOADED_AT = 32;
+    private static final int SLOT_KEY_LENGTH = 40;
+    private static final int SLOT_PAYLOAD_LENGTH = 44;
+    private static final int SLOT_HEADER_SIZE = 48;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int stampBuckets;
+    private final int slotCount;
+    private final int slotSize;
+    private final int slotsOffset;
+
+    private SharedCustomerCache(FileChannel channel, MappedByteBuffer buffer, int stampBuckets, int slotCount, int slotSize) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.stampBuckets = stampBuckets;
+        this.slotCount = slotCount;
+        this.slotSize = slotSize;
+        this.slotsOffset = HEADER_SIZE + stampBuckets * STAMP_BUCKET_SIZE;
+    }
+
+    public static SharedCustomerCache open(Path file) {
+        return open(file, DEFAULT_SLOT_COUNT, DEFAULT_SLOT_SIZE, DEFAULT_STAMP_BUCKETS);
+    }
+
+    /**
+     * Opens the cache file, creating and formatting it if it does not exist yet.
+     *
+     * @param file the file shared by all processes using the cache
+     * @param slotCount number of cached lookups, a power of two
+     * @param slotSize bytes per cached lookup, including key and header
+     * @param stampBuckets number of version stamps, a power of two
+     * @return the opened cache
+     */
+    public static SharedCustomerCache open(Path file, int slotCount, int slotSize, int stampBuckets) {
+        if (Integer.bitCount(slotCount) != 1 || Integer.bitCount(stampBuckets) != 1) {
+            throw new IllegalArgumentException("slotCount and stampBuckets must be powers of two");
+        }
+        if (slotSize <= SLOT_HEADER_SIZE || slotSize % 8 != 0) {
+            throw new IllegalArgumentException("slotSize must be a multiple of 8 larger than " + SLOT_HEADER_SIZE);
+        }
+        long size = HEADER_SIZE + (long) stampBuckets * STAMP_BUCKET_SIZE + (long) slotCount * slotSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cache file of " + size + " bytes is too large to map");
+        }
+
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try (FileLock ignored = channel.lock()) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                if (buffer.getInt(MAGIC_OFFSET) == 0) {
+                    buffer.putInt(LAYOUT_VERSION_OFFSET, LAYOUT_VERSION);
+                    buffer.putInt(STAMP_BUCKETS_OFFSET, stampBuckets);
+                    buffer.putInt(SLOT_COUNT_OFFSET, slotCount);
+                    buffer.putInt(SLOT_SIZE_OFFSET, slotSize);
+                    buffer.putInt(MAGIC_OFFSET, MAGIC);
+                } else if (buffer.getInt(MAGIC_OFFSET) != MAGIC
+                        || buffer.getInt(LAYOUT_VERSION_OFFSET) != LAYOUT_VERSION
+                        || buffer.getInt(STAMP_BUCKETS_OFFSET) != stampBuckets
+                        || buffer.getInt(SLOT_COUNT_OFFSET) != slotCount
+                        || buffer.getInt(SLOT_SIZE_OFFSET) != slotSize) {
+                    channel.close();
+                    throw new IllegalStateException("Cache file " + file + " was created with a different layout");
+                }
+                return new SharedCustomerCache(channel, buffer, stampBuckets, slotCount, slotSize);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the write counter, which must be captured before loading a record that may be cached.
+     */
+    public long writeEpoch() {
+        return buffer.getLong(WRITE_EPOCH_OFFSET);
+    }
+
+    /**
+     * Stamps a freshly loaded record so it can be cached.
+     *
+     * @param epochBeforeLoad the {@link #writeEpoch()} read before the record was loaded, or
+     *                        the one returned by {@link #endWrite} for the record just written
+     * @param key the lookup key the record was loaded by
+     * @param internalId the internal id of the loaded customer
+     * @param payload the encoded customer
+     * @return the stamped entry, or null if a write to the customer or the key may have raced the load
+     */
+    Entry stamp(long epochBeforeLoad, String key, String internalId, byte[] payload) {
+        // A write still in flight is not checked for: its endWrite changes the versions again
+        int bucket = bucketOf(internalId);
+        int keyBucket = bucketOf(key);
+        long version = buffer.getLong(versionOffset(bucket));
+        long keyVersion = buffer.getLong(versionOffset(keyBucket) + KEY_VERSION);
+        if (version > epochBeforeLoad || keyVersion > epochBeforeLoad) {
+            return null;
+        }
+        return new Entry(payload, bucket, version, keyBucket, keyVersion, System.currentTimeMillis());
+    }
+
+    boolean isCurrent(Entry entry) {
+        return buffer.getLong(versionOffset(entry.bucket)) == entry.stamp
+                && buffer.getLong(versionOffset(entry.keyBucket) + KEY_VERSION) == entry.keyStamp;
+    }
+
+    Entry get(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int offset = slotOffset(key);
+        ByteBuffer view = buffer.duplicate();
+
+        long sequence = view.getLong(offset + SLOT_SEQUENCE);
+        if ((sequence & 1) != 0) return null;
+
+        int keyLength = view.getInt(offset + SLOT_KEY_LENGTH);
+        int payloadLength = view.getInt(offset + SLOT_PAYLOAD_LENGTH);
+        if (keyLength != keyBytes.length || payloadLength < 0 || keyLength + payloadLength > slotSize - SLOT_HEADER_SIZE) {
+            return null;
+        }
+        int bucket = view.getInt(offset + SLOT_BUCKET);
+        int checksum = view.getInt(offset + SLOT_CHECKSUM);
+        long stamp = view.getLong(offset + SLOT_STAMP);
+        long keyStamp = view.getLong(offset + SLOT_KEY_STAMP);
+        long loadedAtMillis = view.getLong(offset + SLOT_LOADED_AT);
+        byte[] storedKey = new byte[keyLength];
+        byte[] payload = new byte[payloadLength];
+        view.position(offset + SLOT_HEADER_SIZE);
+        view.get(storedKey);
+        view.get(payload);
+
+        if (view.getLong(offset + SLOT_SEQUENCE) != sequence || !Arrays.equals(keyBytes, storedKey)
+                || checksum(bucket, stamp, keyStamp, loadedAtMillis, storedKey, payload) != checksum) {
+            return null;
+        }
+        Entry entry = new Entry(payload, bucket, stamp, bucketOf(key), keyStamp, loadedAtMillis);
+        return isCurrent(entry) ? entry : null;
+    }
+
+    void put(String key, Entry entry) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length + entry.payload.length > slotSize - SLOT_HEADER_SIZE) {
+            return;
+        }
+        int offset = slotOffset(key);
+        synchronized (this) {
+            try (FileLock ignored = channel.lock(0, HEADER_SIZE, false)) {
+                ByteBuffer view = buffer.duplicate();
+                long sequence = view.getLong(offset + SLOT_SEQUENCE);
+                view.putLong(offset + SLOT_SEQUENCE, sequence + 1);
+                view.putInt(offset + SLOT_BUCKET, entry.bucket);
+                view.putInt(offset + SLOT_CHECKSUM,
+                        checksum(entry.bucket, entry.stamp, entry.keyStamp, entry.loadedAtMillis, keyBytes, entry.payload));
+                view.putLong(offset + SLOT_STAMP, entry.stamp);
+                view.putLong(offset + SLOT_KEY_STAMP, entry.keyStamp);
+                view.putLong(offset + SLOT_LOADED_AT, entry.loadedAtMillis);
+                view.putInt(offset + SLOT_KEY_LENGTH, keyBytes.length);
+                view.putInt(offset + SLOT_PAYLOAD_LENGTH, entry.payload.length);
+                view.position(offset + SLOT_HEADER_SIZE);
+                view.put(keyBytes);
+                view.put(entry.payload);
+                view.putLong(offset + SLOT_SEQUENCE, sequence + 2);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Marks the start of a write to a customer; cached records for it stop being served.
+     * Nothing is left behind that {@link #endWrite} must undo, so a process that dies in
+     * between does not keep the customer from being cached again.
+     */
+    public void beginWrite(String internalId) {
+        int bucket = bucketOf(internalId);
+        synchronized (this) {
+            try (FileLock ignored = channel.lock(0, HEADER_SIZE, false)) {
+                buffer.putLong(versionOffset(bucket), nextWriteEpoch());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Marks the end of a write started with {@link #beginWrite}.
+     *
+     * @param internalId the internal id of the written customer
+     * @param keys the lookup keys of the record as written
+     * @return the write counter value of this write, under which the written record can be stamped
+     */
+    public long endWrite(String internalId, Collection<String> keys) {
+        int bucket = bucketOf(internalId);
+        synchronized (this) {
+            try (FileLock ignored = channel.lock(0, HEADER_SIZE, false)) {
+                long epoch = nextWriteEpoch();
+                buffer.putLong(versionOffset(bucket), epoch);
+                for (String key : keys) {
+                    buffer.putLong(versionOffset(bucketOf(key)) + KEY_VERSION, epoch);
+                }
+                return epoch;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long nextWriteEpoch() {
+        long epoch = buffer.getLong(WRITE_EPOCH_OFFSET) + 1;
+        buffer.putLong(WRITE_EPOCH_OFFSET, epoch);
+        return epoch;
+    }
+
+    private int bucketOf(String internalIdOrKey) {
+        return spread(internalIdOrKey.hashCode()) & (stampBuckets - 1);
+    }
+
+    private int versionOffset(int bucket) {
+        return HEADER_SIZE + bucket * STAMP_BUCKET_SIZE;
+    }
+
+    private int slotOffset(String key) {
+        return slotsOffset + (spread(key.hashCode()) & (slotCount - 1)) * slotSize;
+    }
+
+    private static int checksum(int bucket, long stamp, long keyStamp, long loadedAtMillis, byte[] key, byte[] payload) {
+        // Covers every field a torn or reordered read could mix up, including the lengths
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(36).putInt(bucket).putLong(stamp).putLong(keyStamp).putLong(loadedAtMillis)
+                .putInt(key.length).putInt(payload.length).array());
+        crc.update(key);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        return hash ^ (hash >>> 13);
+    }
+
+    /**
+     * An encoded customer together with the version stamps of its customer and key, and the
+     * wall-clock time it was loaded at.
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+    static final class Entry {
+        final byte[] payload;
+        final int bucket;
+        final long stamp;
+        final int keyBucket;
+        final long keyStamp;
+        final long loadedAtMillis;
+    }
+}
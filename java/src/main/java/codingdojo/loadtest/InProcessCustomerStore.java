@@ -0,0 +1,201 @@
+package codingdojo.loadtest;
+
+import codingdojo.data.CustomerChangeLog;
+import codingdojo.data.CustomerDataLayer;
+import codingdojo.model.Customer;
+import codingdojo.model.AddressSnapshot;
+import codingdojo.model.CustomerSnapshot;
+import codingdojo.model.ShoppingList;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Indexed in-memory {@link CustomerDataLayer} for load tests.
+ * <p>
+ * Rows are kept as {@link CustomerSnapshot}s and every lookup returns a fresh {@link Customer},
+ * so the sync behaves as it would against a real database. Lookups are lock-free; writes are
+ * serialized to keep the secondary indexes consistent. An optional latency is applied to every
+ * call to stand in for the network round trip.
+ * <p>
+ * The store is also its own {@link CustomerChangeLog}. It remembers the sequence number of each
+ * row's latest write rather than every write, so a subscriber catching up is handed the current
+ * rows written since, and then every write before it becomes visible.
+ * <p>
+ * The store keeps a rough estimate of the heap its rows and indexes take, so that a soak test
+ * can tell the store's genuine growth apart from a leak in the sync.
+ */
+public class InProcessCustomerStore implements CustomerDataLayer, CustomerChangeLog {
+
+    // Approximate sizes on a 64-bit JVM with compressed references
+    private static final long ROW_BYTES = 160;
+    private static final long INDEX_ENTRY_BYTES = 48;
+    private static final long STRING_BYTES = 40;
+    private static final long ADDRESS_BYTES = 24;
+    private static final long SHOPPING_LIST_BYTES = 56;
+    private static final long REFERENCE_BYTES = 4;
+
+    private final Map<String, CustomerSnapshot> byInternalId = new ConcurrentHashMap<>();
+    private final Map<String, String> byExternalId = new ConcurrentHashMap<>();
+    private final Map<String, String> byMasterExternalId = new ConcurrentHashMap<>();
+    private final Map<String, String> byCompanyNumber = new ConcurrentHashMap<>();
+    private final Map<String, Long> sequenceByInternalId = new HashMap<>();
+    private final List<ChangeListener> listeners = new ArrayList<>();
+    private long latestSequence;
+    private final AtomicLong nextInternalId = new AtomicLong(1);
+    private final LongAdder roundTrips = new LongAdder();
+    private final LongAdder estimatedBytes = new LongAdder();
+    private final long latencyNanos;
+
+    public InProcessCustomerStore() {
+        this(Duration.ZERO);
+    }
+
+    public InProcessCustomerStore(Duration latency) {
+        this.latencyNanos = latency.toNanos();
+    }
+
+    public int size() {
+        return byInternalId.size();
+    }
+
+    public long getRoundTrips() {
+        return roundTrips.sum();
+    }
+
+    /**
+     * Returns the estimated heap taken by the stored rows and their index entries.
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes.sum();
+    }
+
+    @Override
+    public Customer updateCustomerRecord(Customer customer) {
+        roundTrip();
+        store(CustomerSnapshot.of(customer));
+        return customer;
+    }
+
+    @Override
+    public Customer createCustomerRecord(Customer customer) {
+        roundTrip();
+        CustomerSnapshot created = CustomerSnapshot.of(customer).withInternalId(Long.toString(nextInternalId.getAndIncrement()));
+        store(created);
+        return created.toCustomer();
+    }
+
+    @Override
+    public void updateShoppingList(ShoppingList consumerShoppingList) {
+        roundTrip();
+    }
+
+    @Override
+    public synchronized Runnable subscribe(long sinceSequence, ChangeListener listener) {
+        List<Map.Entry<String, Long>> since = new ArrayList<>();
+        for (Map.Entry<String, Long> written : sequenceByInternalId.entrySet()) {
+            if (written.getValue() > sinceSequence) since.add(written);
+        }
+        since.sort(Comparator.comparingLong(Map.Entry::getValue));
+        for (Map.Entry<String, Long> written : since) {
+            listener.changed(written.getValue(), byInternalId.get(written.getKey()).toCustomer());
+        }
+        listeners.add(listener);
+        return () -> {
+            synchronized (this) {
+                listeners.remove(listener);
+            }
+        };
+    }
+
+    @Override
+    public Customer findByExternalId(String externalId) {
+        return find(byExternalId, externalId);
+    }
+
+    @Override
+    public Customer findByMasterExternalId(String externalId) {
+        return find(byMasterExternalId, externalId);
+    }
+
+    @Override
+    public Customer findByCompanyNumber(String companyNumber) {
+        return find(byCompanyNumber, companyNumber);
+    }
+
+    private Customer find(Map<String, String> index, String key) {
+        roundTrip();
+        if (key == null) return null;
+        String internalId = index.get(key);
+        CustomerSnapshot row = internalId == null ? null : byInternalId.get(internalId);
+        return row == null ? null : row.toCustomer();
+    }
+
+    private synchronized void store(CustomerSnapshot row) {
+        // Subscribers hear of the write before it is visible, so they never miss a visible row
+        long sequence = ++latestSequence;
+        sequenceByInternalId.put(row.getInternalId(), sequence);
+        for (ChangeListener listener : listeners) {
+            listener.changed(sequence, row.toCustomer());
+        }
+
+        CustomerSnapshot previous = byInternalId.put(row.getInternalId(), row);
+        estimatedBytes.add(estimateBytes(row) - (previous == null ? 0 : estimateBytes(previous)));
+        if (previous != null) {
+            unindex(byExternalId, previous.getExternalId(), previous.getInternalId());
+            unindex(byMasterExternalId, previous.getMasterExternalId(), previous.getInternalId());
+            unindex(byCompanyNumber, previous.getCompanyNumber(), previous.getInternalId());
+        }
+        index(byExternalId, row.getExternalId(), row.getInternalId());
+        index(byMasterExternalId, row.getMasterExternalId(), row.getInternalId());
+        index(byCompanyNumber, row.getCompanyNumber(), row.getInternalId());
+    }
+
+    private static long estimateBytes(CustomerSnapshot row) {
+        // The row, plus the entry holding the sequence number of its latest write
+        long bytes = ROW_BYTES + INDEX_ENTRY_BYTES + stringBytes(row.getInternalId()) + stringBytes(row.getName())
+                + stringBytes(row.getPreferredStore());
+        for (String key : new String[]{row.getExternalId(), row.getMasterExternalId(), row.getCompanyNumber()}) {
+            if (key != null) bytes += INDEX_ENTRY_BYTES + stringBytes(key);
+        }
+        AddressSnapshot address = row.getAddress();
+        if (address != null) {
+            bytes += ADDRESS_BYTES + stringBytes(address.getStreet()) + stringBytes(address.getCity())
+                    + stringBytes(address.getPostalCode());
+        }
+        for (ShoppingList shoppingList : row.getShoppingLists()) {
+            bytes += SHOPPING_LIST_BYTES;
+            for (String product : shoppingList.getProducts()) {
+                bytes += REFERENCE_BYTES + stringBytes(product);
+            }
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : STRING_BYTES + value.length();
+    }
+
+    private static void index(Map<String, String> index, String key, String internalId) {
+        if (key != null) index.put(key, internalId);
+    }
+
+    private static void unindex(Map<String, String> index, String key, String internalId) {
+        if (key != null) index.remove(key, internalId);
+    }
+
+    private void roundTrip() {
+        roundTrips.increment();
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package codingdojo.loadtest;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * Settings for a {@link LoadTestRunner} run: target load, feed mix, store behaviour and SLOs.
+ * <p>
+ * On the command line every field can be set as {@code --name=value}, for example
+ * {@code --targetRate=2000 --duration=PT2H --sloP99Micros=20000}. Durations use ISO-8601.
+ */
+@Value
+@Builder(toBuilder = true)
+public class LoadTestConfig {
+
+    /** Records per second offered to the sync, independent of how fast it keeps up. */
+    @Builder.Default double targetRate = 500;
+    @Builder.Default Duration duration = Duration.ofMinutes(1);
+    @Builder.Default Duration reportInterval = Duration.ofSeconds(10);
+    @Builder.Default int workers = 4;
+    /** Records waiting for a worker before the sender blocks; latency still counts from the due time. */
+    @Builder.Default int maxQueuedRecords = 10_000;
+    @Builder.Default long randomSeed = 42;
+
+    /** Customers loaded into the store before the run starts. */
+    @Builder.Default int seedCustomers = 10_000;
+    @Builder.Default double personShare = 0.6;
+    @Builder.Default double newCustomerShare = 0.3;
+    @Builder.Default double duplicateClusterShare = 0.05;
+    @Builder.Default double conflictShare = 0.01;
+    @Builder.Default double shoppingListShare = 0.2;
+
+    /** Simulated store round trip, applied to every lookup and write. */
+    @Builder.Default Duration storeLatency = Duration.ZERO;
+
+    @Builder.Default long sloP99Micros = 50_000;
+    @Builder.Default long sloP999Micros = 200_000;
+    @Builder.Default long sloMaxMicros = Long.MAX_VALUE;
+    /** Smallest acceptable achieved rate as a fraction of {@link #targetRate}. */
+    @Builder.Default double sloMinThroughputRatio = 0.95;
+    /** Share of the run spent in stop-the-world GC pauses. */
+    @Builder.Default double sloMaxGcPausePercent = 5;
+    @Builder.Default long sloMaxGcPauseMillis = 500;
+    /** Growth of the heap left after collection, less the estimated growth of the in-process store. */
+    @Builder.Default double sloMaxHeapGrowthMbPerHour = 64;
+    @Builder.Default long sloMaxErrors = 0;
+
+    public static LoadTestConfig fromArgs(String... args) {
+        LoadTestConfigBuilder builder = builder();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but was " + arg);
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (name) {
+                case "targetRate": builder.targetRate(Double.parseDouble(value)); break;
+                case "duration": builder.duration(Duration.parse(value)); break;
+                case "reportInterval": builder.reportInterval(Duration.parse(value)); break;
+                case "workers": builder.workers(Integer.parseInt(value)); break;
+                case "maxQueuedRecords": builder.maxQueuedRecords(Integer.parseInt(value)); break;
+                case "randomSeed": builder.randomSeed(Long.parseLong(value)); break;
+                case "seedCustomers": builder.seedCustomers(Integer.parseInt(value)); break;
+                case "personShare": builder.personShare(Double.parseDouble(value)); break;
+                case "newCustomerShare": builder.newCustomerShare(Double.parseDouble(value)); break;
+                case "duplicateClusterShare": builder.duplicateClusterShare(Double.parseDouble(value)); break;
+                case "conflictShare": builder.conflictShare(Double.parseDouble(value)); break;
+                case "shoppingListShare": builder.shoppingListShare(Double.parseDouble(value)); break;
+                case "storeLatency": builder.storeLatency(Duration.parse(value)); break;
+                case "sloP99Micros": builder.sloP99Micros(Long.parseLong(value)); break;
+                case "sloP999Micros": builder.sloP999Micros(Long.parseLong(value)); break;
+                case "sloMaxMicros": builder.sloMaxMicros(Long.parseLong(value)); break;
+                case "sloMinThroughputRatio": builder.sloMinThroughputRatio(Double.parseDouble(value)); break;
+                case "sloMaxGcPausePercent": builder.sloMaxGcPausePercent(Double.parseDouble(value)); break;
+                case "sloMaxGcPauseMillis": builder.sloMaxGcPauseMillis(Long.parseLong(value)); break;
+                case "sloMaxHeapGrowthMbPerHour": builder.sloMaxHeapGrowthMbPerHour(Double.parseDouble(value)); break;
+                case "sloMaxErrors": builder.sloMaxErrors(Long.parseLong(value)); break;
+                default: throw new IllegalArgumentException("Unknown option --" + name);
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,41 @@
+package codingdojo.loadtest;
+
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Outcome of a {@link LoadTestRunner} run, with the SLOs it broke, if any.
+ */
+@Value
+@Builder
+public class LoadTestReport {
+    long records;
+    long conflicts;
+    long errors;
+    double throughput;
+    long p50Micros;
+    long p99Micros;
+    long p999Micros;
+    long maxMicros;
+    double gcPausePercent;
+    long maxGcPauseMillis;
+    double heapGrowthMbPerHour;
+    int storeSize;
+    int maxQueueDepth;
+    @Singular
+    List<String> violations;
+
+    public boolean passed() {
+        return violations.isEmpty();
+    }
+
+    public String summary() {
+        return String.format("records=%d conflicts=%d errors=%d throughput=%.1f/s p50=%dus p99=%dus p99.9=%dus max=%dus"
+                        + " gcPause=%.2f%% maxGcPause=%dms heapGrowth=%.1fMB/h storeSize=%d maxQueueDepth=%d",
+                records, conflicts, errors, throughput, p50Micros, p99Micros, p999Micros, maxMicros,
+                gcPausePercent, maxGcPauseMillis, heapGrowthMbPerHour, storeSize, maxQueueDepth);
+    }
+}
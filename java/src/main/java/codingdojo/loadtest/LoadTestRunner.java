@@ -0,0 +1,340 @@
+package codingdojo.loadtest;
+
+import codingdojo.model.ConflictException;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.sync.CustomerSync;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Standalone soak test for {@link CustomerSync}.
+ * <p>
+ * Offers synthetic feed records at a fixed rate to a pool of workers syncing against an
+ * {@link InProcessCustomerStore}. Latency is measured from the moment each record was due, not
+ * from when a worker picked it up, so a sync that falls behind shows up in the tail instead of
+ * being hidden by a slower send rate. Records wait for a worker in a bounded queue; when it is
+ * full the sender blocks rather than let the backlog grow without limit, and the records it
+ * sends late still count from when they were due. Every report interval prints latency
+ * percentiles, throughput, the deepest the queue got, stop-the-world GC pauses, and
+ * the heap left after collection next to the estimated footprint of the store. Heap growth is
+ * judged on the difference, so a store that grows with the feed is not mistaken for a leak. At the end
+ * the run is checked against the SLOs in its {@link LoadTestConfig}; {@link #main} exits with
+ * status 1 if any was broken.
+ */
+public class LoadTestRunner {
+
+    private static final double MB = 1024 * 1024;
+    private static final double NANOS_PER_HOUR = TimeUnit.HOURS.toNanos(1);
+    // The store estimate is calibrated against the measured heap, within these bounds
+    private static final double MIN_STORE_CALIBRATION = 0.5;
+    private static final double MAX_STORE_CALIBRATION = 4;
+
+    private final LoadTestConfig config;
+    private final PrintStream out;
+
+    private final Recorder recorder = new Recorder(3);
+    private final Histogram total = new Histogram(3);
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder gcPauseMillis = new LongAdder();
+    private final AtomicLong maxGcPauseMillis = new AtomicLong();
+    private final AtomicLong intervalMaxGcPauseMillis = new AtomicLong();
+    private final AtomicBoolean firstErrorReported = new AtomicBoolean();
+    private final List<double[]> heapSamples = new ArrayList<>();
+    private double storeCalibration = 1;
+    private int intervalMaxQueueDepth;
+    private int maxQueueDepth;
+
+    public LoadTestRunner(LoadTestConfig config, PrintStream out) {
+        if (!(config.getTargetRate() > 0) || periodNanos(config) == 0) {
+            throw new IllegalArgumentException("targetRate must be positive and at most one record per nanosecond but was "
+                    + config.getTargetRate());
+        }
+        if (config.getDuration().isNegative() || config.getDuration().isZero()) {
+            throw new IllegalArgumentException("duration must be positive but was " + config.getDuration());
+        }
+        if (config.getReportInterval().isNegative() || config.getReportInterval().isZero()) {
+            throw new IllegalArgumentException("reportInterval must be positive but was " + config.getReportInterval());
+        }
+        this.config = config;
+        this.out = out;
+    }
+
+    public static void main(String[] args) {
+        LoadTestReport report = new LoadTestRunner(LoadTestConfig.fromArgs(args), System.out).run();
+        System.out.println(report.summary());
+        report.getViolations().forEach(violation -> System.out.println("SLO violated: " + violation));
+        System.exit(report.passed() ? 0 : 1);
+    }
+
+    private static long periodNanos(LoadTestConfig config) {
+        return (long) (TimeUnit.SECONDS.toNanos(1) / config.getTargetRate());
+    }
+
+    public LoadTestReport run() {
+        InProcessCustomerStore store = new InProcessCustomerStore(config.getStoreLatency());
+        SyntheticFeedGenerator generator = new SyntheticFeedGenerator(config);
+        long heapBeforeSeed = heapAfterFullGcBytes();
+        generator.seed(store);
+        calibrateStoreEstimate(heapAfterFullGcBytes() - heapBeforeSeed, store.getEstimatedBytes());
+        List<Runnable> gcListenerRemovals = listenForGcPauses();
+        CustomerSync customerSync = new CustomerSync(store);
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(config.getMaxQueuedRecords());
+        ExecutorService workers = new ThreadPoolExecutor(config.getWorkers(), config.getWorkers(), 0, TimeUnit.MILLISECONDS,
+                queue, LoadTestRunner::blockUntilQueued);
+
+        long periodNanos = periodNanos(config);
+        long intervalNanos = config.getReportInterval().toNanos();
+        long start = System.nanoTime();
+        long end = start + config.getDuration().toNanos();
+        long nextReport = start + intervalNanos;
+        long sent = 0;
+
+        out.println("elapsed_s  records  rate/s  p50_us  p99_us  p99.9_us  max_us  queue_max  gc_ms  gc_max_ms  heap_after_gc_mb  store_mb");
+        long intendedStart = start;
+        while (intendedStart < end) {
+            long now = System.nanoTime();
+            if (now >= nextReport) {
+                reportInterval(now - start, intervalNanos, store);
+                nextReport += intervalNanos;
+            } else if (now < intendedStart) {
+                LockSupport.parkNanos(Math.min(intendedStart, nextReport) - now);
+            } else {
+                ExternalCustomer externalCustomer = generator.next();
+                long dueAt = intendedStart;
+                workers.execute(() -> syncOne(customerSync, externalCustomer, dueAt));
+                intervalMaxQueueDepth = Math.max(intervalMaxQueueDepth, queue.size());
+                sent++;
+                intendedStart = start + sent * periodNanos;
+            }
+        }
+
+        workers.shutdown();
+        awaitTermination(workers);
+        long elapsedNanos = System.nanoTime() - start;
+        reportInterval(elapsedNanos, start + elapsedNanos - (nextReport - intervalNanos), store);
+        gcListenerRemovals.forEach(Runnable::run);
+
+        return report(sent, elapsedNanos, store.size());
+    }
+
+    private void syncOne(CustomerSync customerSync, ExternalCustomer externalCustomer, long dueAt) {
+        try {
+            customerSync.syncWithDataLayer(externalCustomer);
+        } catch (ConflictException e) {
+            conflicts.increment();
+        } catch (RuntimeException e) {
+            errors.increment();
+            if (firstErrorReported.compareAndSet(false, true)) {
+                e.printStackTrace(out);
+            }
+        } finally {
+            recorder.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - dueAt)));
+        }
+    }
+
+    private void reportInterval(long elapsedNanos, long intervalNanos, InProcessCustomerStore store) {
+        Histogram interval = recorder.getIntervalHistogram();
+        total.add(interval);
+        double heapAfterGcMb = heapAfterGcBytes() / MB;
+        double storeMb = store.getEstimatedBytes() * storeCalibration / MB;
+        heapSamples.add(new double[]{elapsedNanos / NANOS_PER_HOUR, heapAfterGcMb - storeMb});
+        maxQueueDepth = Math.max(maxQueueDepth, intervalMaxQueueDepth);
+        out.printf("%9.1f  %7d  %6.0f  %6d  %6d  %8d  %6d  %9d  %5d  %9d  %16.1f  %8.1f%n",
+                elapsedNanos / 1e9,
+                interval.getTotalCount(),
+                interval.getTotalCount() / Math.max(1e-9, intervalNanos / 1e9),
+                interval.getValueAtPercentile(50),
+                interval.getValueAtPercentile(99),
+                interval.getValueAtPercentile(99.9),
+                interval.getMaxValue(),
+                intervalMaxQueueDepth,
+                gcPauseMillis.sum(),
+                intervalMaxGcPauseMillis.getAndSet(0),
+                heapAfterGcMb,
+                storeMb);
+        intervalMaxQueueDepth = 0;
+    }
+
+    private LoadTestReport report(long sent, long elapsedNanos, int storeSize) {
+        double throughput = total.getTotalCount() / (elapsedNanos / 1e9);
+        double gcPausePercent = 100.0 * TimeUnit.MILLISECONDS.toNanos(gcPauseMillis.sum()) / elapsedNanos;
+        double heapGrowth = heapGrowthMbPerHour();
+
+        LoadTestReport.LoadTestReportBuilder report = LoadTestReport.builder()
+                .records(total.getTotalCount())
+                .conflicts(conflicts.sum())
+                .errors(errors.sum())
+                .throughput(throughput)
+                .p50Micros(total.getValueAtPercentile(50))
+                .p99Micros(total.getValueAtPercentile(99))
+                .p999Micros(total.getValueAtPercentile(99.9))
+                .maxMicros(total.getMaxValue())
+                .gcPausePercent(gcPausePercent)
+                .maxGcPauseMillis(maxGcPauseMillis.get())
+                .heapGrowthMbPerHour(heapGrowth)
+                .storeSize(storeSize)
+                .maxQueueDepth(maxQueueDepth);
+
+        if (total.getTotalCount() != sent) {
+            report.violation("only " + total.getTotalCount() + " of " + sent + " records completed");
+        }
+        if (total.getValueAtPercentile(99) > config.getSloP99Micros()) {
+            report.violation("p99 " + total.getValueAtPercentile(99) + "us > " + config.getSloP99Micros() + "us");
+        }
+        if (total.getValueAtPercentile(99.9) > config.getSloP999Micros()) {
+            report.violation("p99.9 " + total.getValueAtPercentile(99.9) + "us > " + config.getSloP999Micros() + "us");
+        }
+        if (total.getMaxValue() > config.getSloMaxMicros()) {
+            report.violation("max " + total.getMaxValue() + "us > " + config.getSloMaxMicros() + "us");
+        }
+        if (throughput < config.getTargetRate() * config.getSloMinThroughputRatio()) {
+            report.violation(String.format("throughput %.1f/s < %.1f/s", throughput, config.getTargetRate() * config.getSloMinThroughputRatio()));
+        }
+        if (gcPausePercent > config.getSloMaxGcPausePercent()) {
+            report.violation(String.format("gc pauses %.2f%% > %.2f%%", gcPausePercent, config.getSloMaxGcPausePercent()));
+        }
+        if (maxGcPauseMillis.get() > config.getSloMaxGcPauseMillis()) {
+            report.violation("gc pause " + maxGcPauseMillis.get() + "ms > " + config.getSloMaxGcPauseMillis() + "ms");
+        }
+        if (heapGrowth > config.getSloMaxHeapGrowthMbPerHour()) {
+            report.violation(String.format("heap growth %.1fMB/h > %.1fMB/h", heapGrowth, config.getSloMaxHeapGrowthMbPerHour()));
+        }
+        if (errors.sum() > config.getSloMaxErrors()) {
+            report.violation(errors.sum() + " errors > " + config.getSloMaxErrors());
+        }
+        return report.build();
+    }
+
+    /**
+     * Least-squares slope of the heap left after collection less the store's footprint,
+     * ignoring the first interval as warm-up.
+     */
+    private double heapGrowthMbPerHour() {
+        List<double[]> samples = heapSamples.size() > 3 ? heapSamples.subList(1, heapSamples.size()) : heapSamples;
+        if (samples.size() < 3) return 0;
+
+        double meanHours = samples.stream().mapToDouble(sample -> sample[0]).average().orElse(0);
+        double meanMb = samples.stream().mapToDouble(sample -> sample[1]).average().orElse(0);
+        double covariance = 0;
+        double variance = 0;
+        for (double[] sample : samples) {
+            covariance += (sample[0] - meanHours) * (sample[1] - meanMb);
+            variance += (sample[0] - meanHours) * (sample[0] - meanHours);
+        }
+        return variance == 0 ? 0 : covariance / variance;
+    }
+
+    /**
+     * Scales the store's own estimate so that it matches the heap the seed customers actually took.
+     */
+    private void calibrateStoreEstimate(long measuredBytes, long estimatedBytes) {
+        if (measuredBytes > 0 && estimatedBytes > 0) {
+            storeCalibration = Math.max(MIN_STORE_CALIBRATION, Math.min(MAX_STORE_CALIBRATION, (double) measuredBytes / estimatedBytes));
+        }
+        out.printf("store footprint: %.1f MB estimated, %.1f MB measured after seeding, calibration %.2f%n",
+                estimatedBytes / MB, measuredBytes / MB, storeCalibration);
+    }
+
+    private static long heapAfterFullGcBytes() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long heapAfterGcBytes() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage afterGc = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (afterGc != null) used += afterGc.getUsed();
+        }
+        return used > 0 ? used : ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Records every stop-the-world collection reported by the collectors. Concurrent cycles are
+     * skipped because their duration is mostly spent alongside the application, not pausing it.
+     *
+     * @return actions that remove the listeners again
+     */
+    private List<Runnable> listenForGcPauses() {
+        List<Runnable> removals = new ArrayList<>();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (!(collector instanceof NotificationEmitter) || isConcurrent(collector.getName())) continue;
+
+            NotificationEmitter emitter = (NotificationEmitter) collector;
+            NotificationListener listener = (notification, handback) -> {
+                if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                    GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                    recordGcPause(info.getGcInfo().getDuration());
+                }
+            };
+            emitter.addNotificationListener(listener, null, null);
+            removals.add(() -> {
+                try {
+                    emitter.removeNotificationListener(listener);
+                } catch (ListenerNotFoundException e) {
+                    // Already removed
+                }
+            });
+        }
+        return removals;
+    }
+
+    private void recordGcPause(long pauseMillis) {
+        gcPauseMillis.add(pauseMillis);
+        maxGcPauseMillis.accumulateAndGet(pauseMillis, Math::max);
+        intervalMaxGcPauseMillis.accumulateAndGet(pauseMillis, Math::max);
+    }
+
+    private static boolean isConcurrent(String collectorName) {
+        // Covers CMS, the G1 concurrent cycle, and the ZGC and Shenandoah cycle collectors
+        return collectorName.contains("Concurrent") || collectorName.contains("Cycles");
+    }
+
+    private static void blockUntilQueued(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Workers have been shut down");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a worker", e);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService workers) {
+        try {
+            if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package codingdojo.loadtest;
+
+import codingdojo.data.CustomerDataLayer;
+import codingdojo.model.Address;
+import codingdojo.model.Customer;
+import codingdojo.model.CustomerType;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.ShoppingList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Produces an endless feed of external customers in the mix set by a {@link LoadTestConfig}.
+ * <p>
+ * {@link #seed} fills the store with existing persons, companies and duplicate clusters (a
+ * company plus a second record pointing at it through its master external id). The feed then
+ * mixes records for new and existing customers, records that hit a duplicate cluster and
+ * records that conflict with an existing customer of the other type. The known ids are fixed
+ * after seeding so the generator itself does not grow during a soak test. Not thread-safe.
+ */
+public class SyntheticFeedGenerator {
+
+    private static final String[] PRODUCTS = {"lipstick", "blusher", "mascara", "eyeliner", "foundation", "powder"};
+    private static final String[] CITIES = {"Helsingborg", "Malmo", "Lund", "Stockholm", "Gothenburg"};
+
+    private final LoadTestConfig config;
+    private final Random random;
+    private final List<String> persons = new ArrayList<>();
+    private final List<String[]> companies = new ArrayList<>();
+    private final List<String[]> clusters = new ArrayList<>();
+    private long nextId;
+
+    public SyntheticFeedGenerator(LoadTestConfig config) {
+        this.config = config;
+        this.random = new Random(config.getRandomSeed());
+    }
+
+    public void seed(CustomerDataLayer customerDataLayer) {
+        int clusterCount = Math.max(1, (int) (config.getSeedCustomers() * config.getDuplicateClusterShare()));
+        int singles = Math.max(2, config.getSeedCustomers() - 2 * clusterCount);
+
+        for (int i = 0; i < singles; i++) {
+            if (i == 0 || (i > 1 && random.nextDouble() < config.getPersonShare())) {
+                String externalId = newId("P");
+                customerDataLayer.createCustomerRecord(customer(externalId, externalId, null, CustomerType.PERSON));
+                persons.add(externalId);
+            } else {
+                String externalId = newId("C");
+                String companyNumber = newId("N");
+                customerDataLayer.createCustomerRecord(customer(externalId, externalId, companyNumber, CustomerType.COMPANY));
+                companies.add(new String[]{externalId, companyNumber});
+            }
+        }
+
+        for (int i = 0; i < clusterCount; i++) {
+            String externalId = newId("K");
+            String companyNumber = newId("N");
+            customerDataLayer.createCustomerRecord(customer(externalId, null, companyNumber, CustomerType.COMPANY));
+            customerDataLayer.createCustomerRecord(customer(newId("D"), externalId, null, CustomerType.COMPANY));
+            clusters.add(new String[]{externalId, companyNumber});
+        }
+    }
+
+    public ExternalCustomer next() {
+        double roll = random.nextDouble();
+        if (roll < config.getConflictShare()) {
+            return conflict();
+        }
+        if (roll < config.getConflictShare() + config.getDuplicateClusterShare()) {
+            String[] cluster = pick(clusters);
+            return company(cluster[0], cluster[1]);
+        }
+
+        boolean isNew = random.nextDouble() < config.getNewCustomerShare();
+        if (random.nextDouble() < config.getPersonShare()) {
+            return person(isNew ? newId("P") : pick(persons));
+        }
+        if (isNew) {
+            return company(newId("C"), newId("N"));
+        }
+        String[] company = pick(companies);
+        return company(company[0], company[1]);
+    }
+
+    private ExternalCustomer conflict() {
+        // A person record carrying a company's external id, or the other way round
+        if (random.nextBoolean()) {
+            return person(pick(companies)[0]);
+        }
+        return company(pick(persons), newId("N"));
+    }
+
+    private ExternalCustomer person(String externalId) {
+        ExternalCustomer externalCustomer = externalCustomer(externalId);
+        externalCustomer.setBonusPointsBalance(random.nextInt(10_000));
+        return externalCustomer;
+    }
+
+    private ExternalCustomer company(String externalId, String companyNumber) {
+        ExternalCustomer externalCustomer = externalCustomer(externalId);
+        externalCustomer.setCompanyNumber(companyNumber);
+        return externalCustomer;
+    }
+
+    private ExternalCustomer externalCustomer(String externalId) {
+        ExternalCustomer externalCustomer = new ExternalCustomer();
+        externalCustomer.setExternalId(externalId);
+        externalCustomer.setName("Customer " + externalId);
+        externalCustomer.setAddress(new Address(random.nextInt(1000) + " main st", pick(CITIES), "SE-" + (10_000 + random.nextInt(90_000))));
+        externalCustomer.setPreferredStore(pick(CITIES));
+        if (random.nextDouble() < config.getShoppingListShare()) {
+            externalCustomer.setShoppingLists(Collections.singletonList(new ShoppingList(pick(PRODUCTS), pick(PRODUCTS))));
+        }
+        return externalCustomer;
+    }
+
+    private static Customer customer(String externalId, String masterExternalId, String companyNumber, CustomerType customerType) {
+        Customer customer = new Customer();
+        customer.setExternalId(externalId);
+        customer.setMasterExternalId(masterExternalId);
+        customer.setCompanyNumber(companyNumber);
+        customer.setCustomerType(customerType);
+        customer.setName("Customer " + externalId);
+        return customer;
+    }
+
+    private String newId(String prefix) {
+        return prefix + nextId++;
+    }
+
+    private <T> T pick(List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
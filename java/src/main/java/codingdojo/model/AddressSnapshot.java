@@ -0,0 +1,25 @@
+package codingdojo.model;
+
+import lombok.Builder;
+import lombok.Value;
+import lombok.With;
+
+/**
+ * Immutable view of an {@link Address}.
+ */
+@Value
+@With
+@Builder(toBuilder = true)
+public class AddressSnapshot {
+    String street;
+    String city;
+    String postalCode;
+
+    public static AddressSnapshot of(Address address) {
+        return address == null ? null : new AddressSnapshot(address.getStreet(), address.getCity(), address.getPostalCode());
+    }
+
+    public Address toAddress() {
+        return new Address(street, city, postalCode);
+    }
+}
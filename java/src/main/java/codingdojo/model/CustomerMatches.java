@@ -5,6 +5,11 @@ import lombok.Data;
 import java.util.ArrayList;
 import java.util.Collection;
 
+/**
+ * Result of a customer lookup. Not thread-safe: a match is built, modified and synchronized
+ * by the thread handling one feed record, and must not be shared with other threads. Share a
+ * {@link CustomerSnapshot} of the matched customers instead.
+ */
 @Data
 public class CustomerMatches {
     private final Collection<Customer> duplicates = new ArrayList<>();
@@ -18,4 +23,4 @@ public class CustomerMatches {
     public void addDuplicate(Customer duplicate) {
         duplicates.add(duplicate);
     }
-}
\ No newline at end of file
+}
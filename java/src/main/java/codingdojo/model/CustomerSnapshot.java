@@ -0,0 +1,75 @@
+package codingdojo.model;
+
+import lombok.Builder;
+import lombok.Value;
+import lombok.With;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable view of a {@link Customer} that caches and parallel workers can share without
+ * copying or locking. Use the {@code with...} methods or {@link #toBuilder()} to derive a
+ * changed snapshot, and {@link #toCustomer()} to get a mutable record for the sync.
+ */
+@Value
+@With
+public class CustomerSnapshot {
+    String externalId;
+    String masterExternalId;
+    AddressSnapshot address;
+    String preferredStore;
+    List<ShoppingList> shoppingLists;
+    String internalId;
+    String name;
+    CustomerType customerType;
+    String companyNumber;
+    int bonusPointsBalance;
+
+    @Builder(toBuilder = true)
+    public CustomerSnapshot(String externalId, String masterExternalId, AddressSnapshot address, String preferredStore,
+                            List<ShoppingList> shoppingLists, String internalId, String name, CustomerType customerType,
+                            String companyNumber, int bonusPointsBalance) {
+        this.externalId = externalId;
+        this.masterExternalId = masterExternalId;
+        this.address = address;
+        this.preferredStore = preferredStore;
+        this.shoppingLists = shoppingLists == null
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(shoppingLists));
+        this.internalId = internalId;
+        this.name = name;
+        this.customerType = customerType;
+        this.companyNumber = companyNumber;
+        this.bonusPointsBalance = bonusPointsBalance;
+    }
+
+    public static CustomerSnapshot of(Customer customer) {
+        return new CustomerSnapshot(customer.getExternalId(), customer.getMasterExternalId(),
+                AddressSnapshot.of(customer.getAddress()), customer.getPreferredStore(), customer.getShoppingLists(),
+                customer.getInternalId(), customer.getName(), customer.getCustomerType(),
+                customer.getCompanyNumber(), customer.getBonusPointsBalance());
+    }
+
+    public CustomerSnapshot withAddedShoppingList(ShoppingList shoppingList) {
+        List<ShoppingList> newList = new ArrayList<>(shoppingLists);
+        newList.add(shoppingList);
+        return withShoppingLists(newList);
+    }
+
+    public Customer toCustomer() {
+        Customer customer = new Customer();
+        customer.setExternalId(externalId);
+        customer.setMasterExternalId(masterExternalId);
+        customer.setAddress(address == null ? null : address.toAddress());
+        customer.setPreferredStore(preferredStore);
+        customer.setShoppingLists(new ArrayList<>(shoppingLists));
+        customer.setInternalId(internalId);
+        customer.setName(name);
+        customer.setCustomerType(customerType);
+        customer.setCompanyNumber(companyNumber);
+        customer.setBonusPointsBalance(bonusPointsBalance);
+        return customer;
+    }
+}
@@ -0,0 +1,63 @@
+package codingdojo.model;
+
+import lombok.Builder;
+import lombok.Value;
+import lombok.With;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable view of an {@link ExternalCustomer} that can be shared between workers. Like
+ * {@link CustomerSnapshot}, a snapshot always has a shopping list collection, which is empty
+ * when the record had none.
+ */
+@Value
+@With
+public class ExternalCustomerSnapshot {
+    AddressSnapshot address;
+    String name;
+    String preferredStore;
+    List<ShoppingList> shoppingLists;
+    String externalId;
+    String companyNumber;
+    int bonusPointsBalance;
+
+    @Builder(toBuilder = true)
+    public ExternalCustomerSnapshot(AddressSnapshot address, String name, String preferredStore,
+                                    List<ShoppingList> shoppingLists, String externalId, String companyNumber,
+                                    int bonusPointsBalance) {
+        this.address = address;
+        this.name = name;
+        this.preferredStore = preferredStore;
+        this.shoppingLists = shoppingLists == null
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(shoppingLists));
+        this.externalId = externalId;
+        this.companyNumber = companyNumber;
+        this.bonusPointsBalance = bonusPointsBalance;
+    }
+
+    public static ExternalCustomerSnapshot of(ExternalCustomer externalCustomer) {
+        return new ExternalCustomerSnapshot(AddressSnapshot.of(externalCustomer.getAddress()), externalCustomer.getName(),
+                externalCustomer.getPreferredStore(), externalCustomer.getShoppingLists(), externalCustomer.getExternalId(),
+                externalCustomer.getCompanyNumber(), externalCustomer.getBonusPointsBalance());
+    }
+
+    public boolean isCompany() {
+        return companyNumber != null;
+    }
+
+    public ExternalCustomer toExternalCustomer() {
+        ExternalCustomer externalCustomer = new ExternalCustomer();
+        externalCustomer.setAddress(address == null ? null : address.toAddress());
+        externalCustomer.setName(name);
+        externalCustomer.setPreferredStore(preferredStore);
+        externalCustomer.setShoppingLists(new ArrayList<>(shoppingLists));
+        externalCustomer.setExternalId(externalId);
+        externalCustomer.setCompanyNumber(companyNumber);
+        externalCustomer.setBonusPointsBalance(bonusPointsBalance);
+        return externalCustomer;
+    }
+}
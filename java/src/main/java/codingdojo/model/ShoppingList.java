@@ -1,16 +1,19 @@
 package codingdojo.model;
 
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 @Getter
+@EqualsAndHashCode
 public class ShoppingList {
     private final List<String> products;
 
     public ShoppingList(String... products) {
-        this.products = Arrays.asList(products);
+        this.products = Collections.unmodifiableList(Arrays.asList(products.clone()));
     }
 
 }
@@ -9,17 +9,111 @@ import codingdojo.model.CustomerSyncResult;
 import codingdojo.model.CustomerType;
 import codingdojo.model.ExternalCustomer;
 
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
 public class CustomerSync {
 
+    private final CustomerDataLayer customerDataLayer;
     private final CustomerDataAccess customerDataAccess;
 
     public CustomerSync(CustomerDataLayer customerDataLayer) {
+        this.customerDataLayer = customerDataLayer;
         customerDataAccess = new CustomerDataAccess(customerDataLayer);
     }
 
     public boolean syncWithDataLayer(ExternalCustomer externalCustomer) {
+        return syncMatches(customerDataAccess, externalCustomer, loadMatches(customerDataAccess, externalCustomer));
+    }
+
+    /**
+     * Synchronizes a whole feed, collapsing repeated records for the same customer first
+     * so that each customer is looked up and written once.
+     *
+     * A merged record that conflicts with the store is skipped and reported in the result,
+     * and the records after it are still synchronized.
+     *
+     * @param feed the incoming external customers, in feed order
+     * @return the merged records synchronized, the customers created and the conflicts found
+     */
+    public FeedSyncResult syncFeed(Iterator<ExternalCustomer> feed) {
+        return syncFeed(feed, new ExternalCustomerAggregator());
+    }
+
+    public FeedSyncResult syncFeed(Iterator<ExternalCustomer> feed, ExternalCustomerAggregator aggregator) {
+        FeedSyncResult result = new FeedSyncResult();
+        aggregator.aggregate(feed, externalCustomer -> {
+            try {
+                result.recordSynced(syncWithDataLayer(externalCustomer));
+            } catch (ConflictException e) {
+                // Conflicts are found while matching, before any write, so the store is left as it was
+                result.recordConflict(externalCustomer, e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Computes the writes a feed would cause without changing the store.
+     * <p>
+     * Every record is matched and synchronized exactly like {@link #syncWithDataLayer}, but
+     * against a read-only view of the store that records writes instead of making them. Records
+     * are planned in parallel, so the data layer must support concurrent lookups. The plans are
+     * then combined in feed order, and a record that looked up or wrote a key an earlier record
+     * touched is planned again against the store as the earlier records would leave it.
+     *
+     * @param feed the incoming external customers, in feed order
+     * @return the plan, which reports totals and can be applied later
+     */
+    public SyncPlan plan(List<ExternalCustomer> feed) {
+        AtomicLong placeholderIds = new AtomicLong();
+        List<SyncPlan> recordPlans = feed.parallelStream()
+                .map(externalCustomer -> planRecord(externalCustomer, new PlannedRows(), placeholderIds))
+                .collect(Collectors.toList());
+
+        SyncPlan plan = new SyncPlan();
+        Set<String> touchedKeys = new HashSet<>();
+        PlannedRows plannedRows = new PlannedRows();
+        for (int i = 0; i < recordPlans.size(); i++) {
+            SyncPlan recordPlan = recordPlans.get(i);
+            if (recordPlan.touchesAny(touchedKeys)) {
+                recordPlan = planRecord(feed.get(i), plannedRows, placeholderIds);
+            }
+            recordPlan.addTouchedKeysTo(touchedKeys);
+            recordPlan.addWrittenRowsTo(plannedRows);
+            plan.append(recordPlan);
+        }
+        return plan;
+    }
+
+    private SyncPlan planRecord(ExternalCustomer externalCustomer, PlannedRows plannedRows, AtomicLong placeholderIds) {
+        SyncPlan plan = new SyncPlan();
+        CustomerDataAccess planningAccess = new CustomerDataAccess(
+                new PlanningDataLayer(customerDataLayer, plan, plannedRows, placeholderIds));
+        try {
+            CustomerMatches customerMatches = loadMatches(planningAccess, externalCustomer);
+            plan.recordMatches(customerMatches);
+            if (syncMatches(planningAccess, externalCustomer, customerMatches)) {
+                plan.recordCreatedCustomer();
+            }
+        } catch (ConflictException e) {
+            // Conflicts are found while matching, before any write, so the plan keeps only its lookups
+            plan.recordConflict(externalCustomer, e);
+        }
+        return plan;
+    }
+
+    private CustomerMatches loadMatches(CustomerDataAccess customerDataAccess, ExternalCustomer externalCustomer) {
+        return externalCustomer.isCompany()
+                ? loadCompany(customerDataAccess, externalCustomer)
+                : loadPerson(customerDataAccess, externalCustomer);
+    }
 
-        CustomerMatches customerMatches = externalCustomer.isCompany() ? loadCompany(externalCustomer) : loadPerson(externalCustomer);
+    private boolean syncMatches(CustomerDataAccess customerDataAccess, ExternalCustomer externalCustomer, CustomerMatches customerMatches) {
 
         Customer customer = customerMatches.getCustomer();
 
@@ -36,7 +130,7 @@ public class CustomerSync {
         return result.isCreated();
     }
 
-    private CustomerMatches loadCompany(ExternalCustomer externalCustomer) {
+    private CustomerMatches loadCompany(CustomerDataAccess customerDataAccess, ExternalCustomer externalCustomer) {
 
         final String externalId = externalCustomer.getExternalId();
         final String companyNumber = externalCustomer.getCompanyNumber();
@@ -69,7 +163,7 @@ public class CustomerSync {
         return customerMatches;
     }
 
-    private CustomerMatches loadPerson(ExternalCustomer externalCustomer) {
+    private CustomerMatches loadPerson(CustomerDataAccess customerDataAccess, ExternalCustomer externalCustomer) {
         final String externalId = externalCustomer.getExternalId();
 
         CustomerMatches customerMatches = customerDataAccess.loadPersonCustomer(externalId);
@@ -0,0 +1,326 @@
+package codingdojo.sync;
+
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.ExternalCustomerSnapshot;
+import codingdojo.model.ShoppingList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Collapses several feed records for the same customer into one effective record before sync.
+ * <p>
+ * A record joins the open group for its externalId when it has the same companyNumber;
+ * otherwise that group is closed and the record starts a new one. Only records with nothing
+ * in between for the same externalId are merged, so syncing the merged records ends in the same
+ * state as syncing the feed one record at a time. Within a group the latest record wins for
+ * every field except the shopping lists, which are concatenated in feed order. Merged records
+ * are emitted in the order their groups were first seen in the feed, because syncs of different
+ * groups sharing an externalId do not commute. Records are held as
+ * {@link ExternalCustomerSnapshot}s while they are aggregated, so the feed's records are never
+ * modified and merging needs no defensive copies.
+ * <p>
+ * Groups are kept in memory up to a configurable size; beyond that they are spilled to disk as
+ * runs sorted by externalId and feed position, merged back at most {@code maxMergeFanIn} runs
+ * at a time, joining a group split across runs, and the merged groups are then sorted back into
+ * feed order the same way. Feeds larger than the heap can therefore be aggregated with a bounded
+ * number of open files. Callers that want window semantics rather than whole-feed semantics
+ * call {@link #aggregate} once per window.
+ */
+public class ExternalCustomerAggregator {
+
+    public static final int DEFAULT_MAX_IN_MEMORY_RECORDS = 10_000;
+    public static final int DEFAULT_MAX_MERGE_FAN_IN = 64;
+
+    private static final Comparator<Group> BY_FIRST_SEEN = Comparator.comparingLong(group -> group.firstSeen);
+    private static final Comparator<Group> BY_EXTERNAL_ID = Comparator
+            .comparing((Group group) -> group.record.getExternalId(), Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(BY_FIRST_SEEN);
+
+    private final int maxInMemoryRecords;
+    private final int maxMergeFanIn;
+    private final File spillDirectory;
+
+    public ExternalCustomerAggregator() {
+        this(DEFAULT_MAX_IN_MEMORY_RECORDS, new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    public ExternalCustomerAggregator(int maxInMemoryRecords, File spillDirectory) {
+        this(maxInMemoryRecords, DEFAULT_MAX_MERGE_FAN_IN, spillDirectory);
+    }
+
+    public ExternalCustomerAggregator(int maxInMemoryRecords, int maxMergeFanIn, File spillDirectory) {
+        if (maxInMemoryRecords < 1) {
+            throw new IllegalArgumentException("maxInMemoryRecords must be positive but was " + maxInMemoryRecords);
+        }
+        if (maxMergeFanIn < 2) {
+            throw new IllegalArgumentException("maxMergeFanIn must be at least 2 but was " + maxMergeFanIn);
+        }
+        this.maxInMemoryRecords = maxInMemoryRecords;
+        this.maxMergeFanIn = maxMergeFanIn;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Aggregates a feed and hands every merged record to the sink exactly once, in the order
+     * in which each group's first record appeared in the feed.
+     *
+     * @param feed the incoming external customers, in feed order
+     * @param sink receives one merged record per group of adjacent records for the same customer
+     */
+    public void aggregate(Iterator<ExternalCustomer> feed, Consumer<ExternalCustomer> sink) {
+        List<File> spillFiles = new ArrayList<>();
+        try {
+            // The groups of each externalId in feed order; only the last one is still open
+            Map<String, List<Group>> window = new HashMap<>();
+            int windowGroups = 0;
+            List<File> externalIdRuns = new ArrayList<>();
+            long sequence = 0;
+            while (feed.hasNext()) {
+                Group group = new Group(sequence++, ExternalCustomerSnapshot.of(feed.next()));
+                List<Group> groups = window.computeIfAbsent(group.record.getExternalId(), externalId -> new ArrayList<>());
+                int open = groups.size() - 1;
+                if (open >= 0 && continuesGroup(groups.get(open), group)) {
+                    groups.set(open, combine(groups.get(open), group));
+                    continue;
+                }
+                groups.add(group);
+                if (++windowGroups >= maxInMemoryRecords) {
+                    externalIdRuns.add(spill(groupsOf(window), BY_EXTERNAL_ID, spillFiles));
+                    window.clear();
+                    windowGroups = 0;
+                }
+            }
+
+            if (externalIdRuns.isEmpty()) {
+                emitInFeedOrder(groupsOf(window), sink);
+                return;
+            }
+            if (!window.isEmpty()) {
+                externalIdRuns.add(spill(groupsOf(window), BY_EXTERNAL_ID, spillFiles));
+                window.clear();
+            }
+
+            // Join groups split across runs, then sort the merged groups back into feed order
+            List<Group> buffer = new ArrayList<>();
+            List<File> feedOrderRuns = new ArrayList<>();
+            merge(reduceFanIn(externalIdRuns, BY_EXTERNAL_ID, true, spillFiles), BY_EXTERNAL_ID, true, group -> {
+                buffer.add(group);
+                if (buffer.size() >= maxInMemoryRecords) {
+                    feedOrderRuns.add(spill(buffer, BY_FIRST_SEEN, spillFiles));
+                    buffer.clear();
+                }
+            });
+
+            if (feedOrderRuns.isEmpty()) {
+                emitInFeedOrder(buffer, sink);
+                return;
+            }
+            if (!buffer.isEmpty()) {
+                feedOrderRuns.add(spill(buffer, BY_FIRST_SEEN, spillFiles));
+                buffer.clear();
+            }
+            merge(reduceFanIn(feedOrderRuns, BY_FIRST_SEEN, false, spillFiles), BY_FIRST_SEEN, false,
+                    group -> sink.accept(group.record.toExternalCustomer()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (File spillFile : spillFiles) {
+                spillFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Merges two records of the same group.
+     *
+     * @param earlier the record seen first in the feed
+     * @param later the record seen afterwards
+     * @return a record with the fields of {@code later} and the shopping lists of both
+     */
+    static ExternalCustomerSnapshot merge(ExternalCustomerSnapshot earlier, ExternalCustomerSnapshot later) {
+        List<ShoppingList> shoppingLists = new ArrayList<>(earlier.getShoppingLists());
+        shoppingLists.addAll(later.getShoppingLists());
+        return later.withShoppingLists(shoppingLists);
+    }
+
+    private static Group combine(Group earlier, Group later) {
+        return new Group(earlier.firstSeen, merge(earlier.record, later.record));
+    }
+
+    /**
+     * Whether {@code next} belongs to the group {@code open}, given that no other group for the
+     * same externalId lies between them in the feed.
+     */
+    private static boolean continuesGroup(Group open, Group next) {
+        return Objects.equals(open.record.getExternalId(), next.record.getExternalId())
+                && Objects.equals(open.record.getCompanyNumber(), next.record.getCompanyNumber());
+    }
+
+    private static List<Group> groupsOf(Map<String, List<Group>> window) {
+        List<Group> groups = new ArrayList<>();
+        window.values().forEach(groups::addAll);
+        return groups;
+    }
+
+    private static void emitInFeedOrder(Collection<Group> groups, Consumer<ExternalCustomer> sink) {
+        List<Group> sorted = new ArrayList<>(groups);
+        sorted.sort(BY_FIRST_SEEN);
+        sorted.forEach(group -> sink.accept(group.record.toExternalCustomer()));
+    }
+
+    private File spill(Collection<Group> groups, Comparator<Group> order, List<File> spillFiles) throws IOException {
+        List<Group> sorted = new ArrayList<>(groups);
+        sorted.sort(order);
+        File spillFile = newSpillFile(spillFiles);
+        try (RunWriter writer = new RunWriter(spillFile)) {
+            for (Group group : sorted) {
+                writer.write(group);
+            }
+        }
+        return spillFile;
+    }
+
+    /**
+     * Merges runs in passes of at most {@code maxMergeFanIn} until one final merge can take them all.
+     * Neighbouring runs are merged together so that earlier runs still hold earlier feed records.
+     */
+    private List<File> reduceFanIn(List<File> runs, Comparator<Group> order, boolean joinSplitGroups,
+                                   List<File> spillFiles) throws IOException {
+        while (runs.size() > maxMergeFanIn) {
+            List<File> nextPass = new ArrayList<>();
+            for (int from = 0; from < runs.size(); from += maxMergeFanIn) {
+                List<File> batch = runs.subList(from, Math.min(from + maxMergeFanIn, runs.size()));
+                if (batch.size() == 1) {
+                    nextPass.add(batch.get(0));
+                    continue;
+                }
+                File merged = newSpillFile(spillFiles);
+                try (RunWriter writer = new RunWriter(merged)) {
+                    merge(batch, order, joinSplitGroups, writer::write);
+                }
+                for (File run : batch) {
+                    run.delete();
+                }
+                nextPass.add(merged);
+            }
+            runs = nextPass;
+        }
+        return runs;
+    }
+
+    private static void merge(List<File> runFiles, Comparator<Group> order, boolean joinSplitGroups,
+                              GroupSink sink) throws IOException {
+        List<RunReader> runs = new ArrayList<>();
+        try {
+            for (File runFile : runFiles) {
+                runs.add(new RunReader(runs.size(), runFile));
+            }
+
+            // Ties go to the earlier run, which holds the earlier feed records
+            PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                    Comparator.<RunReader, Group>comparing(run -> run.current, order).thenComparingInt(run -> run.sequence));
+            for (RunReader run : runs) {
+                if (run.advance()) queue.add(run);
+            }
+
+            while (!queue.isEmpty()) {
+                RunReader head = queue.poll();
+                Group merged = head.current;
+                if (head.advance()) queue.add(head);
+
+                // In externalId order a group split across runs comes out as neighbouring parts
+                while (joinSplitGroups && !queue.isEmpty() && continuesGroup(merged, queue.peek().current)) {
+                    RunReader next = queue.poll();
+                    merged = combine(merged, next.current);
+                    if (next.advance()) queue.add(next);
+                }
+                sink.accept(merged);
+            }
+        } finally {
+            for (RunReader run : runs) {
+                run.close();
+            }
+        }
+    }
+
+    private File newSpillFile(List<File> spillFiles) throws IOException {
+        File spillFile = File.createTempFile("customer-feed-", ".run", spillDirectory);
+        spillFiles.add(spillFile);
+        return spillFile;
+    }
+
+    private interface GroupSink {
+        void accept(Group group) throws IOException;
+    }
+
+    private static final class Group {
+        final long firstSeen;
+        final ExternalCustomerSnapshot record;
+
+        Group(long firstSeen, ExternalCustomerSnapshot record) {
+            this.firstSeen = firstSeen;
+            this.record = record;
+        }
+    }
+
+    private static final class RunWriter implements Closeable {
+        private final DataOutputStream out;
+
+        RunWriter(File runFile) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile)));
+        }
+
+        void write(Group group) throws IOException {
+            out.writeBoolean(true);
+            out.writeLong(group.firstSeen);
+            ExternalCustomerRecordIO.write(out, group.record);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.writeBoolean(false);
+            out.close();
+        }
+    }
+
+    private static final class RunReader implements Closeable {
+        final int sequence;
+        private final DataInputStream in;
+        Group current;
+
+        RunReader(int sequence, File runFile) throws IOException {
+            this.sequence = sequence;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile)));
+        }
+
+        boolean advance() throws IOException {
+            if (!in.readBoolean()) return false;
+            current = new Group(in.readLong(), ExternalCustomerRecordIO.read(in));
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package codingdojo.sync;
+
+import codingdojo.model.AddressSnapshot;
+import codingdojo.model.ExternalCustomerSnapshot;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static codingdojo.data.RecordFieldIO.readAddress;
+import static codingdojo.data.RecordFieldIO.readNullableString;
+import static codingdojo.data.RecordFieldIO.readShoppingLists;
+import static codingdojo.data.RecordFieldIO.writeAddress;
+import static codingdojo.data.RecordFieldIO.writeNullableString;
+import static codingdojo.data.RecordFieldIO.writeShoppingLists;
+
+/**
+ * Binary encoding of {@link ExternalCustomerSnapshot} records used for aggregation spill files.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class ExternalCustomerRecordIO {
+
+    static void write(DataOutput out, ExternalCustomerSnapshot externalCustomer) throws IOException {
+        writeNullableString(out, externalCustomer.getExternalId());
+        writeNullableString(out, externalCustomer.getCompanyNumber());
+        writeNullableString(out, externalCustomer.getName());
+        writeNullableString(out, externalCustomer.getPreferredStore());
+        out.writeInt(externalCustomer.getBonusPointsBalance());
+        writeAddress(out, externalCustomer.getAddress() == null ? null : externalCustomer.getAddress().toAddress());
+        writeShoppingLists(out, externalCustomer.getShoppingLists());
+    }
+
+    static ExternalCustomerSnapshot read(DataInput in) throws IOException {
+        return ExternalCustomerSnapshot.builder()
+                .externalId(readNullableString(in))
+                .companyNumber(readNullableString(in))
+                .name(readNullableString(in))
+                .preferredStore(readNullableString(in))
+                .bonusPointsBalance(in.readInt())
+                .address(AddressSnapshot.of(readAddress(in)))
+                .shoppingLists(readShoppingLists(in))
+                .build();
+    }
+}
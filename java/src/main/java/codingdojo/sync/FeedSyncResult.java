@@ -0,0 +1,49 @@
+package codingdojo.sync;
+
+import codingdojo.model.ConflictException;
+import codingdojo.model.ExternalCustomer;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What {@link CustomerSync#syncFeed} did with a feed. A merged record that conflicts with the
+ * store is left as it is and reported here, like {@link SyncPlan} reports it, while the rest of
+ * the feed is still synchronized.
+ */
+@Getter
+public class FeedSyncResult {
+
+    @Getter(AccessLevel.NONE)
+    private final List<String> conflicts = new ArrayList<>();
+
+    private int records;
+    private int createdCustomers;
+
+    public List<String> getConflicts() {
+        return Collections.unmodifiableList(conflicts);
+    }
+
+    public int getConflictCount() {
+        return conflicts.size();
+    }
+
+    public String summary() {
+        return "records=" + records
+                + " createdCustomers=" + createdCustomers
+                + " conflicts=" + conflicts.size();
+    }
+
+    void recordSynced(boolean created) {
+        records++;
+        if (created) createdCustomers++;
+    }
+
+    void recordConflict(ExternalCustomer externalCustomer, ConflictException conflict) {
+        records++;
+        conflicts.add(externalCustomer.getExternalId() + ": " + conflict.getMessage());
+    }
+}
@@ -0,0 +1,38 @@
+package codingdojo.sync;
+
+import codingdojo.data.CustomerDataLayer;
+import codingdojo.model.Customer;
+import codingdojo.model.CustomerSnapshot;
+import lombok.RequiredArgsConstructor;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * The store lookups the sync makes, with the customer field each one matches on.
+ */
+@RequiredArgsConstructor
+enum LookupKind {
+    EXTERNAL_ID("E:", CustomerDataLayer::findByExternalId, CustomerSnapshot::getExternalId),
+    MASTER_EXTERNAL_ID("M:", CustomerDataLayer::findByMasterExternalId, CustomerSnapshot::getMasterExternalId),
+    COMPANY_NUMBER("C:", CustomerDataLayer::findByCompanyNumber, CustomerSnapshot::getCompanyNumber);
+
+    private final String prefix;
+    private final BiFunction<CustomerDataLayer, String, Customer> lookup;
+    private final Function<CustomerSnapshot, String> field;
+
+    /**
+     * Returns a key that identifies a lookup of this kind, distinct from the other kinds.
+     */
+    String keyOf(String value) {
+        return prefix + value;
+    }
+
+    Customer find(CustomerDataLayer customerDataLayer, String value) {
+        return lookup.apply(customerDataLayer, value);
+    }
+
+    String valueOf(CustomerSnapshot customer) {
+        return field.apply(customer);
+    }
+}
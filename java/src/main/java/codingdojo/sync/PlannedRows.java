@@ -0,0 +1,37 @@
+package codingdojo.sync;
+
+import codingdojo.model.CustomerSnapshot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Customer rows as the records planned so far would leave them, indexed like the store so
+ * that records planned afterwards look them up instead of the rows the store still holds.
+ */
+class PlannedRows {
+
+    private final Map<String, CustomerSnapshot> byInternalId = new HashMap<>();
+    private final Map<String, String> internalIdByKey = new HashMap<>();
+
+    void put(CustomerSnapshot row) {
+        CustomerSnapshot previous = byInternalId.put(row.getInternalId(), row);
+        for (LookupKind kind : LookupKind.values()) {
+            if (previous != null && kind.valueOf(previous) != null) {
+                internalIdByKey.remove(kind.keyOf(kind.valueOf(previous)), row.getInternalId());
+            }
+            if (kind.valueOf(row) != null) {
+                internalIdByKey.put(kind.keyOf(kind.valueOf(row)), row.getInternalId());
+            }
+        }
+    }
+
+    CustomerSnapshot find(LookupKind kind, String value) {
+        String internalId = internalIdByKey.get(kind.keyOf(value));
+        return internalId == null ? null : byInternalId.get(internalId);
+    }
+
+    boolean contains(String internalId) {
+        return byInternalId.containsKey(internalId);
+    }
+}
@@ -0,0 +1,84 @@
+package codingdojo.sync;
+
+import codingdojo.data.CustomerDataLayer;
+import codingdojo.model.Customer;
+import codingdojo.model.CustomerSnapshot;
+import codingdojo.model.ShoppingList;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Data layer used while planning: lookups go to the real store, writes are recorded in a
+ * {@link SyncPlan} instead. Lookups return copies so that the sync logic, which modifies the
+ * customers it loads, never changes records held by the store.
+ * <p>
+ * Rows written by earlier records of the feed are looked up in {@link PlannedRows} first, and
+ * store rows they replace are hidden. Created customers get a placeholder internal id, which
+ * {@link SyncPlan#apply} swaps for the id the store assigns.
+ */
+@RequiredArgsConstructor
+class PlanningDataLayer implements CustomerDataLayer {
+
+    static final String PLACEHOLDER_PREFIX = "planned-";
+
+    private final CustomerDataLayer customerDataLayer;
+    private final SyncPlan plan;
+    private final PlannedRows plannedRows;
+    private final AtomicLong placeholderIds;
+
+    @Override
+    public Customer updateCustomerRecord(Customer customer) {
+        plan.recordCustomerWrite(SyncPlan.WriteKind.UPDATE, CustomerSnapshot.of(customer));
+        return customer;
+    }
+
+    @Override
+    public Customer createCustomerRecord(Customer customer) {
+        Customer created = copyOf(customer);
+        created.setInternalId(PLACEHOLDER_PREFIX + placeholderIds.incrementAndGet());
+        plan.recordCustomerWrite(SyncPlan.WriteKind.CREATE, CustomerSnapshot.of(created));
+        return created;
+    }
+
+    @Override
+    public void updateShoppingList(ShoppingList consumerShoppingList) {
+        plan.recordShoppingListWrite(consumerShoppingList);
+    }
+
+    @Override
+    public Customer findByExternalId(String externalId) {
+        return find(LookupKind.EXTERNAL_ID, externalId);
+    }
+
+    @Override
+    public Customer findByMasterExternalId(String externalId) {
+        return find(LookupKind.MASTER_EXTERNAL_ID, externalId);
+    }
+
+    @Override
+    public Customer findByCompanyNumber(String companyNumber) {
+        return find(LookupKind.COMPANY_NUMBER, companyNumber);
+    }
+
+    private Customer find(LookupKind kind, String value) {
+        CustomerSnapshot planned = plannedRows.find(kind, value);
+        if (planned != null) {
+            plan.recordPlannedRead(kind, value, planned);
+            return planned.toCustomer();
+        }
+
+        Customer stored = kind.find(customerDataLayer, value);
+        CustomerSnapshot snapshot = stored == null ? null : CustomerSnapshot.of(stored);
+        plan.recordStoreRead(kind, value, snapshot);
+        if (snapshot == null || plannedRows.contains(snapshot.getInternalId())) {
+            // A planned write has moved the row off this key
+            return null;
+        }
+        return snapshot.toCustomer();
+    }
+
+    private static Customer copyOf(Customer customer) {
+        return customer == null ? null : CustomerSnapshot.of(customer).toCustomer();
+    }
+}
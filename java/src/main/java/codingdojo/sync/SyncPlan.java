@@ -0,0 +1,230 @@
+package codingdojo.sync;
+
+import codingdojo.data.CustomerDataLayer;
+import codingdojo.model.ConflictException;
+import codingdojo.model.Customer;
+import codingdojo.model.CustomerMatches;
+import codingdojo.model.CustomerSnapshot;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.ShoppingList;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The writes a feed would cause, computed by {@link CustomerSync#plan} without touching the store.
+ * <p>
+ * A plan reports totals for a rehearsal and can be replayed later with {@link #apply}. Customers
+ * created by the plan carry placeholder internal ids, so later writes to them pick up the
+ * internal id the store assigns on apply. The plan also remembers what every store lookup
+ * returned while planning, and refuses to apply if the store no longer answers the same way.
+ */
+@Getter
+public class SyncPlan {
+
+    public enum WriteKind {
+        CREATE, UPDATE, SHOPPING_LIST
+    }
+
+    /**
+     * One intended write. Customer writes carry a snapshot of the record, whose internal id is
+     * a placeholder for customers the plan creates.
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class PlannedWrite {
+        private final WriteKind kind;
+        private final CustomerSnapshot customer;
+        private final ShoppingList shoppingList;
+    }
+
+    /**
+     * A store lookup made while planning and the row it returned, or null if it found none.
+     */
+    @RequiredArgsConstructor
+    private static class StoreRead {
+        private final LookupKind kind;
+        private final String value;
+        private final CustomerSnapshot result;
+    }
+
+    private static final String INTERNAL_ID = "I:";
+
+    @Getter(AccessLevel.NONE)
+    private final List<PlannedWrite> writes = new ArrayList<>();
+    @Getter(AccessLevel.NONE)
+    private final List<String> conflicts = new ArrayList<>();
+    @Getter(AccessLevel.NONE)
+    private final Map<String, StoreRead> storeReads = new LinkedHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final Set<String> touchedKeys = new HashSet<>();
+
+    private int records;
+    private int createdCustomers;
+    private int creates;
+    private int updates;
+    private int shoppingListUpdates;
+    private int duplicateDetachments;
+
+    public List<PlannedWrite> getWrites() {
+        return Collections.unmodifiableList(writes);
+    }
+
+    public List<String> getConflicts() {
+        return Collections.unmodifiableList(conflicts);
+    }
+
+    public int getConflictCount() {
+        return conflicts.size();
+    }
+
+    /**
+     * Replays the planned writes, in order, against a store.
+     * <p>
+     * Every lookup made while planning is repeated first. If any of them now returns a
+     * different row, the plan was computed against a store that has since changed and nothing
+     * is written. Changes made by other writers while the plan is being applied are not detected.
+     *
+     * @param customerDataLayer the store to write to
+     * @throws ConflictException if the store changed since the plan was made
+     */
+    public void apply(CustomerDataLayer customerDataLayer) {
+        for (StoreRead read : storeReads.values()) {
+            Customer current = read.kind.find(customerDataLayer, read.value);
+            if (!Objects.equals(read.result, current == null ? null : CustomerSnapshot.of(current))) {
+                throw new ConflictException("Store changed since planning: lookup of " + read.kind + " " + read.value
+                        + " no longer returns the planned row");
+            }
+        }
+
+        Map<String, String> createdInternalIds = new HashMap<>();
+        for (PlannedWrite write : writes) {
+            switch (write.getKind()) {
+                case CREATE:
+                    CustomerSnapshot planned = write.getCustomer();
+                    Customer created = customerDataLayer.createCustomerRecord(planned.withInternalId(null).toCustomer());
+                    createdInternalIds.put(planned.getInternalId(), created.getInternalId());
+                    break;
+                case UPDATE:
+                    Customer customer = write.getCustomer().toCustomer();
+                    customer.setInternalId(createdInternalIds.getOrDefault(customer.getInternalId(), customer.getInternalId()));
+                    customerDataLayer.updateCustomerRecord(customer);
+                    break;
+                case SHOPPING_LIST:
+                    customerDataLayer.updateShoppingList(write.getShoppingList());
+                    break;
+            }
+        }
+    }
+
+    public String summary() {
+        return "records=" + records
+                + " createdCustomers=" + createdCustomers
+                + " creates=" + creates
+                + " updates=" + updates
+                + " shoppingListUpdates=" + shoppingListUpdates
+                + " duplicateDetachments=" + duplicateDetachments
+                + " conflicts=" + conflicts.size();
+    }
+
+    void recordMatches(CustomerMatches customerMatches) {
+        records++;
+        for (Customer duplicate : customerMatches.getDuplicates()) {
+            // Duplicates found by master id keep it; only a detached customer has it cleared
+            if (duplicate != null && duplicate.getMasterExternalId() == null) {
+                duplicateDetachments++;
+            }
+        }
+    }
+
+    void recordCreatedCustomer() {
+        createdCustomers++;
+    }
+
+    void recordConflict(ExternalCustomer externalCustomer, ConflictException conflict) {
+        records++;
+        conflicts.add(externalCustomer.getExternalId() + ": " + conflict.getMessage());
+    }
+
+    void recordStoreRead(LookupKind kind, String value, CustomerSnapshot result) {
+        storeReads.putIfAbsent(kind.keyOf(value), new StoreRead(kind, value, result));
+        recordPlannedRead(kind, value, result);
+    }
+
+    void recordPlannedRead(LookupKind kind, String value, CustomerSnapshot result) {
+        touchedKeys.add(kind.keyOf(value));
+        if (result != null) {
+            touchRow(result);
+        }
+    }
+
+    void recordCustomerWrite(WriteKind kind, CustomerSnapshot customer) {
+        writes.add(new PlannedWrite(kind, customer, null));
+        touchRow(customer);
+        if (kind == WriteKind.CREATE) {
+            creates++;
+        } else {
+            updates++;
+        }
+    }
+
+    void recordShoppingListWrite(ShoppingList shoppingList) {
+        writes.add(new PlannedWrite(WriteKind.SHOPPING_LIST, null, shoppingList));
+        shoppingListUpdates++;
+    }
+
+    /**
+     * Tells whether this plan looked up or wrote any of the given keys.
+     */
+    boolean touchesAny(Collection<String> keys) {
+        return !Collections.disjoint(touchedKeys, keys);
+    }
+
+    void addTouchedKeysTo(Collection<String> keys) {
+        keys.addAll(touchedKeys);
+    }
+
+    void addWrittenRowsTo(PlannedRows plannedRows) {
+        for (PlannedWrite write : writes) {
+            if (write.getCustomer() != null) {
+                plannedRows.put(write.getCustomer());
+            }
+        }
+    }
+
+    /**
+     * Appends a plan recorded after this one.
+     */
+    void append(SyncPlan later) {
+        writes.addAll(later.writes);
+        later.storeReads.forEach(storeReads::putIfAbsent);
+        touchedKeys.addAll(later.touchedKeys);
+        conflicts.addAll(later.conflicts);
+        records += later.records;
+        createdCustomers += later.createdCustomers;
+        creates += later.creates;
+        updates += later.updates;
+        shoppingListUpdates += later.shoppingListUpdates;
+        duplicateDetachments += later.duplicateDetachments;
+    }
+
+    private void touchRow(CustomerSnapshot row) {
+        touchedKeys.add(INTERNAL_ID + row.getInternalId());
+        for (LookupKind kind : LookupKind.values()) {
+            if (kind.valueOf(row) != null) {
+                touchedKeys.add(kind.keyOf(kind.valueOf(row)));
+            }
+        }
+    }
+}
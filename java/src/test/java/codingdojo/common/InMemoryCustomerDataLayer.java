@@ -0,0 +1,122 @@
+package codingdojo.common;
+
+import codingdojo.data.CustomerChangeLog;
+import codingdojo.data.CustomerDataLayer;
+import codingdojo.model.Customer;
+import codingdojo.model.CustomerSnapshot;
+import codingdojo.model.ShoppingList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Fake database for tests that need real read-after-write behaviour instead of mocks.
+ * Records are copied on the way in and out, like rows in a real store, and every write is
+ * kept in a change log.
+ */
+public class InMemoryCustomerDataLayer implements CustomerDataLayer, CustomerChangeLog {
+
+    private final Map<String, Customer> customers = new ConcurrentHashMap<>();
+    private final AtomicInteger nextInternalId = new AtomicInteger(1);
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final AtomicInteger writes = new AtomicInteger();
+    private final List<CustomerSnapshot> changes = new ArrayList<>();
+    private final List<ChangeListener> listeners = new ArrayList<>();
+
+    public Customer add(Customer customer) {
+        return createCustomerRecord(customer);
+    }
+
+    public int getLookups() {
+        return lookups.get();
+    }
+
+    public int getWrites() {
+        return writes.get();
+    }
+
+    public int size() {
+        return customers.size();
+    }
+
+    public List<Customer> all() {
+        List<Customer> all = new ArrayList<>();
+        customers.values().forEach(customer -> all.add(copy(customer)));
+        return all;
+    }
+
+    @Override
+    public Customer updateCustomerRecord(Customer customer) {
+        writes.incrementAndGet();
+        logChange(customer);
+        customers.put(customer.getInternalId(), copy(customer));
+        return customer;
+    }
+
+    @Override
+    public Customer createCustomerRecord(Customer customer) {
+        writes.incrementAndGet();
+        Customer created = copy(customer);
+        created.setInternalId("id-" + nextInternalId.getAndIncrement());
+        logChange(created);
+        customers.put(created.getInternalId(), created);
+        return copy(created);
+    }
+
+    public synchronized long latestSequence() {
+        return changes.size();
+    }
+
+    @Override
+    public synchronized Runnable subscribe(long sinceSequence, ChangeListener listener) {
+        for (int i = (int) sinceSequence; i < changes.size(); i++) {
+            listener.changed(i + 1, changes.get(i).toCustomer());
+        }
+        listeners.add(listener);
+        return () -> {
+            synchronized (this) {
+                listeners.remove(listener);
+            }
+        };
+    }
+
+    @Override
+    public void updateShoppingList(ShoppingList consumerShoppingList) {
+    }
+
+    @Override
+    public Customer findByExternalId(String externalId) {
+        return find(customer -> Objects.equals(externalId, customer.getExternalId()));
+    }
+
+    @Override
+    public Customer findByMasterExternalId(String externalId) {
+        return find(customer -> Objects.equals(externalId, customer.getMasterExternalId()));
+    }
+
+    @Override
+    public Customer findByCompanyNumber(String companyNumber) {
+        return find(customer -> Objects.equals(companyNumber, customer.getCompanyNumber()));
+    }
+
+    private Customer find(Predicate<Customer> predicate) {
+        lookups.incrementAndGet();
+        return customers.values().stream().filter(predicate).findFirst().map(InMemoryCustomerDataLayer::copy).orElse(null);
+    }
+
+    private synchronized void logChange(Customer customer) {
+        // Logged before the row is visible, so a reader never finds a row a listener has not seen
+        CustomerSnapshot change = CustomerSnapshot.of(customer);
+        changes.add(change);
+        listeners.forEach(listener -> listener.changed(changes.size(), change.toCustomer()));
+    }
+
+    private static Customer copy(Customer customer) {
+        return CustomerSnapshot.of(customer).toCustomer();
+    }
+}
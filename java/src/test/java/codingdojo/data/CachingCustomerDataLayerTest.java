@@ -0,0 +1,287 @@
+package codingdojo.data;
+
+import codingdojo.common.CustomerTestDataBuilder;
+import codingdojo.common.InMemoryCustomerDataLayer;
+import codingdojo.model.Customer;
+import codingdojo.model.CustomerType;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.sync.CustomerSync;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class CachingCustomerDataLayerTest {
+
+    private InMemoryCustomerDataLayer db;
+    private Path cacheFile;
+    private SharedCustomerCache sharedCache;
+    private Customer stored;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        db = new InMemoryCustomerDataLayer();
+        cacheFile = Files.createTempFile("customer-cache", ".bin");
+        Files.delete(cacheFile);
+        sharedCache = SharedCustomerCache.open(cacheFile, 64, 512, 64);
+
+        Customer customer = new Customer();
+        customer.setExternalId("12345");
+        customer.setMasterExternalId("12345");
+        customer.setCompanyNumber("470813-8895");
+        customer.setCustomerType(CustomerType.COMPANY);
+        customer.setName("Acme Inc.");
+        stored = db.add(customer);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        sharedCache.close();
+        Files.deleteIfExists(cacheFile);
+    }
+
+    @Test
+    public void repeatedLookupIsServedFromHeapTier() {
+        // arrange
+        CachingCustomerDataLayer cache = new CachingCustomerDataLayer(db, sharedCache);
+
+        // act
+        Customer first = cache.findByExternalId("12345");
+        Customer second = cache.findByExternalId("12345");
+
+        // assert
+        assertEquals(1, db.getLookups());
+        assertEquals(1, cache.getHeapHits());
+        assertEquals(stored.getInternalId(), second.getInternalId());
+        assertNotSame(first, second, "Cached lookups should return fresh instances");
+    }
+
+    @Test
+    public void otherProcessIsWarmFromSharedTier() throws Exception {
+        // arrange
+        new CachingCustomerDataLayer(db, sharedCache).findByCompanyNumber("470813-8895");
+
+        // act
+        Customer found;
+        try (SharedCustomerCache otherProcess = SharedCustomerCache.open(cacheFile, 64, 512, 64)) {
+            found = new CachingCustomerDataLayer(db, otherProcess).findByCompanyNumber("470813-8895");
+        }
+
+        // assert
+        assertEquals(1, db.getLookups());
+        assertEquals("Acme Inc.", found.getName());
+        assertEquals(CustomerType.COMPANY, found.getCustomerType());
+    }
+
+    @Test
+    public void updateInvalidatesBothTiersEverywhere() throws Exception {
+        // arrange
+        CachingCustomerDataLayer reader = new CachingCustomerDataLayer(db, sharedCache);
+        reader.findByMasterExternalId("12345");
+
+        // act
+        try (SharedCustomerCache otherProcess = SharedCustomerCache.open(cacheFile, 64, 512, 64)) {
+            CachingCustomerDataLayer writer = new CachingCustomerDataLayer(db, otherProcess);
+            Customer customer = writer.findByMasterExternalId("12345");
+            customer.setMasterExternalId(null);
+            customer.setName("Renamed Inc.");
+            writer.updateCustomerRecord(customer);
+        }
+
+        // assert
+        assertNull(reader.findByMasterExternalId("12345"));
+        assertEquals("Renamed Inc.", reader.findByExternalId("12345").getName());
+        assertEquals(0, reader.getHeapHits());
+    }
+
+    @Test
+    public void writerDyingMidWriteDoesNotDisableCaching() throws Exception {
+        // arrange
+        try (SharedCustomerCache crashedProcess = SharedCustomerCache.open(cacheFile, 64, 512, 64)) {
+            crashedProcess.beginWrite(stored.getInternalId());
+        }
+        CachingCustomerDataLayer cache = new CachingCustomerDataLayer(db, sharedCache);
+
+        // act
+        cache.findByExternalId("12345");
+        cache.findByExternalId("12345");
+
+        // assert
+        assertEquals(1, db.getLookups());
+        assertEquals(1, cache.getHeapHits());
+    }
+
+    @Test
+    public void corruptedSlotIsTreatedAsMiss() throws Exception {
+        // arrange
+        new CachingCustomerDataLayer(db, sharedCache).findByExternalId("12345");
+        byte[] contents = Files.readAllBytes(cacheFile);
+        byte[] name = "Acme Inc.".getBytes(StandardCharsets.UTF_8);
+        int position = indexOf(contents, name);
+        contents[position] = 'X';
+        Files.write(cacheFile, contents);
+
+        // act
+        Customer found;
+        try (SharedCustomerCache otherProcess = SharedCustomerCache.open(cacheFile, 64, 512, 64)) {
+            found = new CachingCustomerDataLayer(db, otherProcess).findByExternalId("12345");
+        }
+
+        // assert
+        assertEquals(2, db.getLookups());
+        assertEquals("Acme Inc.", found.getName());
+    }
+
+    @Test
+    public void newWorkerIsServedByWarmSharedTier() throws Exception {
+        // arrange
+        Path warmFile = Files.createTempFile("customer-cache", ".bin");
+        Files.delete(warmFile);
+        addCompanies(100);
+        try (SharedCustomerCache workerA = SharedCustomerCache.open(warmFile, 1 << 14, 512, 1 << 10)) {
+            CachingCustomerDataLayer warmer = new CachingCustomerDataLayer(db, workerA);
+            for (int i = 0; i < 100; i++) {
+                warmer.findByExternalId("company-" + i);
+            }
+        }
+        int lookupsAfterWarmup = db.getLookups();
+
+        // act
+        CachingCustomerDataLayer workerB;
+        try (SharedCustomerCache coldStart = SharedCustomerCache.open(warmFile, 1 << 14, 512, 1 << 10)) {
+            workerB = new CachingCustomerDataLayer(db, coldStart);
+            for (int i = 0; i < 100; i++) {
+                assertEquals("Company " + i, workerB.findByExternalId("company-" + i).getName());
+            }
+        } finally {
+            Files.deleteIfExists(warmFile);
+        }
+
+        // assert
+        assertEquals(100, workerB.getSharedHits());
+        assertEquals(0, workerB.getMisses());
+        assertEquals(lookupsAfterWarmup, db.getLookups(), "A warm shared tier should spare the store every lookup");
+    }
+
+    @Test
+    public void boundedHeapTierFallsBackToSharedTier() throws Exception {
+        // arrange
+        Path largeFile = Files.createTempFile("customer-cache", ".bin");
+        Files.delete(largeFile);
+        addCompanies(100);
+
+        // act
+        CachingCustomerDataLayer cache;
+        try (SharedCustomerCache largeCache = SharedCustomerCache.open(largeFile, 1 << 14, 512, 1 << 10)) {
+            cache = new CachingCustomerDataLayer(db, largeCache, 10);
+            for (int pass = 0; pass < 2; pass++) {
+                for (int i = 0; i < 100; i++) {
+                    cache.findByExternalId("company-" + i);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(largeFile);
+        }
+
+        // assert
+        assertEquals(100, cache.getMisses());
+        assertEquals(0, cache.getHeapHits(), "Sequential scans larger than the heap tier evict every entry");
+        assertEquals(100, cache.getSharedHits());
+    }
+
+    @Test
+    public void syncOfKnownCustomersIsServedFromCache() throws Exception {
+        // arrange
+        Path syncFile = Files.createTempFile("customer-cache", ".bin");
+        Files.delete(syncFile);
+        addCompanies(100);
+
+        // act
+        CachingCustomerDataLayer cache;
+        try (SharedCustomerCache syncCache = SharedCustomerCache.open(syncFile, 1 << 14, 512, 1 << 14)) {
+            cache = new CachingCustomerDataLayer(db, syncCache);
+            CustomerSync customerSync = new CustomerSync(cache);
+            for (int pass = 0; pass < 2; pass++) {
+                for (int i = 0; i < 100; i++) {
+                    customerSync.syncWithDataLayer(externalCompany(i, "Company " + i + " pass " + pass));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(syncFile);
+        }
+
+        // assert
+        assertTrue(cache.getHeapHits() + cache.getSharedHits() >= 90,
+                "Updates should leave the synced customers cached, but hits were "
+                        + (cache.getHeapHits() + cache.getSharedHits()));
+        for (int i = 0; i < 100; i++) {
+            assertEquals("Company " + i + " pass 1", db.findByExternalId("company-" + i).getName());
+        }
+    }
+
+    @Test
+    public void expiredEntriesAreLoadedAgain() throws Exception {
+        // arrange
+        CachingCustomerDataLayer cache = new CachingCustomerDataLayer(db, sharedCache, 10, Duration.ofMillis(1));
+        cache.findByExternalId("12345");
+        Thread.sleep(5);
+
+        // act
+        cache.findByExternalId("12345");
+
+        // assert
+        assertEquals(2, db.getLookups());
+        assertEquals(0, cache.getHeapHits());
+        assertEquals(0, cache.getSharedHits());
+    }
+
+    @Test
+    public void missesAreNotCached() {
+        // arrange
+        CachingCustomerDataLayer cache = new CachingCustomerDataLayer(db, sharedCache);
+
+        // act
+        cache.findByExternalId("unknown");
+        cache.findByExternalId("unknown");
+
+        // assert
+        assertEquals(2, db.getLookups());
+    }
+
+    private void addCompanies(int count) {
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer();
+            customer.setExternalId("company-" + i);
+            customer.setCompanyNumber("number-" + i);
+            customer.setCustomerType(CustomerType.COMPANY);
+            customer.setName("Company " + i);
+            db.add(customer);
+        }
+    }
+
+    private static ExternalCustomer externalCompany(int i, String name) {
+        ExternalCustomer externalCustomer = CustomerTestDataBuilder.createExternalCompany();
+        externalCustomer.setExternalId("company-" + i);
+        externalCustomer.setCompanyNumber("number-" + i);
+        externalCustomer.setName(name);
+        return externalCustomer;
+    }
+
+    private static int indexOf(byte[] contents, byte[] part) {
+        for (int i = 0; i + part.length <= contents.length; i++) {
+            if (Arrays.equals(part, Arrays.copyOfRange(contents, i, i + part.length))) return i;
+        }
+        throw new AssertionError("Cache file does not contain the record");
+    }
+}
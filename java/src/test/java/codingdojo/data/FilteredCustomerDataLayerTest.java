@@ -0,0 +1,190 @@
+package codingdojo.data;
+
+import codingdojo.common.CustomerTestDataBuilder;
+import codingdojo.common.InMemoryCustomerDataLayer;
+import codingdojo.loadtest.InProcessCustomerStore;
+import codingdojo.model.Customer;
+import codingdojo.model.CustomerType;
+import codingdojo.sync.CustomerSync;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class FilteredCustomerDataLayerTest {
+
+    private InMemoryCustomerDataLayer db;
+    private CustomerKeyFilter keyFilter;
+    private FilteredCustomerDataLayer filtered;
+
+    @BeforeEach
+    public void setup() {
+        db = new InMemoryCustomerDataLayer();
+        keyFilter = CustomerKeyFilter.create(1_000);
+        filtered = new FilteredCustomerDataLayer(db, keyFilter, db);
+    }
+
+    @Test
+    public void newCompanySyncSkipsStoreLookups() {
+        // arrange
+        CustomerSync customerSync = new CustomerSync(filtered);
+
+        // act
+        boolean created = customerSync.syncWithDataLayer(CustomerTestDataBuilder.createExternalCompany());
+
+        // assert
+        assertTrue(created);
+        assertEquals(0, db.getLookups(), "Absent externalId and companyNumber should not reach the store");
+    }
+
+    @Test
+    public void createdCustomerIsFoundAgain() {
+        // arrange
+        Customer customer = new Customer();
+        customer.setExternalId("12345");
+        customer.setCompanyNumber("470813-8895");
+        customer.setCustomerType(CustomerType.COMPANY);
+        filtered.createCustomerRecord(customer);
+
+        // act
+        Customer byExternalId = filtered.findByExternalId("12345");
+        Customer byCompanyNumber = filtered.findByCompanyNumber("470813-8895");
+
+        // assert
+        assertEquals("12345", byExternalId.getExternalId());
+        assertEquals("12345", byCompanyNumber.getExternalId());
+        assertNull(filtered.findByMasterExternalId("12345"));
+    }
+
+    @Test
+    public void falsePositiveRateIsNearConfiguredRate() {
+        // arrange
+        CustomerKeyFilter filter = CustomerKeyFilter.create(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            Customer customer = new Customer();
+            customer.setExternalId("present-" + i);
+            filter.add(customer);
+        }
+
+        // act
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContainExternalId("present-" + i), "Filter must not have false negatives");
+            if (filter.mightContainExternalId("absent-" + i)) falsePositives++;
+        }
+
+        // assert
+        assertTrue(falsePositives < 200, "Too many false positives: " + falsePositives);
+    }
+
+    @Test
+    public void savedFilterLoadsWithSameContents() throws Exception {
+        // arrange
+        Customer customer = new Customer();
+        customer.setMasterExternalId("12345");
+        keyFilter.add(customer);
+        Path file = Files.createTempFile("customer-keys", ".bloom");
+
+        // act
+        keyFilter.save(file);
+        CustomerKeyFilter loaded = CustomerKeyFilter.load(file);
+        Files.delete(file);
+
+        // assert
+        assertTrue(loaded.mightContainMasterExternalId("12345"));
+        assertFalse(loaded.mightContainExternalId("12345"));
+    }
+
+    @Test
+    public void saveReplacesExistingFileWithoutLeavingTemporaryFiles() throws Exception {
+        // arrange
+        Path directory = Files.createTempDirectory("customer-keys");
+        Path file = directory.resolve("customer-keys.bloom");
+        CustomerKeyFilter.create(10).save(file);
+        Customer customer = new Customer();
+        customer.setExternalId("12345");
+        keyFilter.add(customer);
+
+        // act
+        keyFilter.save(file);
+        CustomerKeyFilter loaded = CustomerKeyFilter.load(file);
+
+        // assert
+        assertTrue(loaded.mightContainExternalId("12345"));
+        assertEquals(1, directory.toFile().list().length, "Only the saved filter should remain");
+        Files.delete(file);
+        Files.delete(directory);
+    }
+
+    @Test
+    public void loadedStaleFilterFindsCustomerWrittenByOtherInstance() throws Exception {
+        // arrange
+        Path file = Files.createTempFile("customer-keys", ".bloom");
+        keyFilter.save(file);
+        FilteredCustomerDataLayer otherWorker = new FilteredCustomerDataLayer(db, CustomerKeyFilter.create(1_000), db);
+        otherWorker.createCustomerRecord(company("12345", "470813-8895"));
+
+        // act
+        FilteredCustomerDataLayer restarted = new FilteredCustomerDataLayer(db, CustomerKeyFilter.load(file), db);
+        Files.delete(file);
+
+        // assert
+        assertNotNull(restarted.findByExternalId("12345"));
+        assertNotNull(restarted.findByCompanyNumber("470813-8895"));
+    }
+
+    @Test
+    public void writeThatBypassesFilterIsFoundAfterCatchUp() {
+        // arrange
+        db.add(company("12345", "470813-8895"));
+
+        // act
+        Customer found = filtered.findByExternalId("12345");
+
+        // assert
+        assertNotNull(found, "A write the filter did not see must not become a false negative");
+        assertEquals(db.latestSequence(), keyFilter.getWatermark());
+        assertNull(filtered.findByExternalId("unknown"));
+    }
+
+    @Test
+    public void filterFollowsChangesOfInProcessStore() {
+        // arrange
+        InProcessCustomerStore store = new InProcessCustomerStore();
+        Customer moved = store.createCustomerRecord(company("12345", "470813-8895"));
+        CustomerKeyFilter emptyFilter = CustomerKeyFilter.create(1_000);
+        FilteredCustomerDataLayer following = new FilteredCustomerDataLayer(store, emptyFilter, store);
+
+        // act
+        moved.setExternalId("67890");
+        store.updateCustomerRecord(moved);
+        store.createCustomerRecord(company("24680", "556677-8899"));
+        long roundTripsBefore = store.getRoundTrips();
+        Customer unknown = following.findByExternalId("unknown");
+        long absentLookupRoundTrips = store.getRoundTrips() - roundTripsBefore;
+
+        // assert
+        assertNull(unknown);
+        assertEquals(0, absentLookupRoundTrips, "An absent key should cost no round trip");
+        assertNotNull(following.findByExternalId("67890"));
+        assertNotNull(following.findByCompanyNumber("470813-8895"));
+        assertNotNull(following.findByExternalId("24680"));
+        assertEquals(3, emptyFilter.getWatermark());
+    }
+
+    private static Customer company(String externalId, String companyNumber) {
+        Customer customer = new Customer();
+        customer.setExternalId(externalId);
+        customer.setCompanyNumber(companyNumber);
+        customer.setCustomerType(CustomerType.COMPANY);
+        return customer;
+    }
+}
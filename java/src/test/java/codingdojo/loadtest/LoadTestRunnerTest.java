@@ -0,0 +1,113 @@
+package codingdojo.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class LoadTestRunnerTest {
+
+    private static final LoadTestConfig SHORT_RUN = LoadTestConfig.builder()
+            .targetRate(200)
+            .duration(Duration.ofSeconds(1))
+            .reportInterval(Duration.ofMillis(250))
+            .seedCustomers(200)
+            .conflictShare(0.1)
+            .sloP99Micros(1_000_000)
+            .sloP999Micros(1_000_000)
+            .sloMinThroughputRatio(0.5)
+            .sloMaxGcPausePercent(100)
+            .sloMaxGcPauseMillis(Long.MAX_VALUE)
+            .sloMaxHeapGrowthMbPerHour(Double.MAX_VALUE)
+            .build();
+
+    @Test
+    public void shortRunMeetsRelaxedSlos() {
+        // act
+        LoadTestReport report = new LoadTestRunner(SHORT_RUN, new PrintStream(new ByteArrayOutputStream())).run();
+
+        // assert
+        assertTrue(report.passed(), () -> "Unexpected violations " + report.getViolations());
+        assertTrue(report.getRecords() >= 150, "Runner should offer records at the target rate");
+        assertTrue(report.getConflicts() > 0, "Feed should contain conflicting records");
+        assertEquals(0, report.getErrors());
+    }
+
+    @Test
+    public void brokenSloFailsTheRun() {
+        // arrange
+        LoadTestConfig config = SHORT_RUN.toBuilder()
+                .storeLatency(Duration.ofMillis(1))
+                .sloP99Micros(1)
+                .build();
+
+        // act
+        LoadTestReport report = new LoadTestRunner(config, new PrintStream(new ByteArrayOutputStream())).run();
+
+        // assert
+        assertFalse(report.passed());
+        assertTrue(report.getViolations().get(0).startsWith("p99"));
+    }
+
+    @Test
+    public void overloadedWorkersKeepQueueBounded() {
+        // arrange
+        LoadTestConfig config = SHORT_RUN.toBuilder()
+                .targetRate(500)
+                .duration(Duration.ofMillis(200))
+                .workers(1)
+                .maxQueuedRecords(10)
+                .storeLatency(Duration.ofMillis(1))
+                .sloP99Micros(Long.MAX_VALUE)
+                .sloP999Micros(Long.MAX_VALUE)
+                .sloMinThroughputRatio(0)
+                .build();
+
+        // act
+        LoadTestReport report = new LoadTestRunner(config, new PrintStream(new ByteArrayOutputStream())).run();
+
+        // assert
+        assertTrue(report.passed(), () -> "Unexpected violations " + report.getViolations());
+        assertEquals(10, report.getMaxQueueDepth(), "The sender should block once the queue is full");
+        assertEquals(100, report.getRecords(), "Blocked records should still be sent and synced");
+    }
+
+    @Test
+    public void configIsReadFromCommandLine() {
+        // act
+        LoadTestConfig config = LoadTestConfig.fromArgs("--targetRate=1000", "--duration=PT2H", "--sloP99Micros=20000");
+
+        // assert
+        assertEquals(1000, config.getTargetRate());
+        assertEquals(Duration.ofHours(2), config.getDuration());
+        assertEquals(20_000, config.getSloP99Micros());
+        assertEquals(4, config.getWorkers());
+    }
+
+    @Test
+    public void invalidRateAndDurationsAreRejected() {
+        // arrange
+        PrintStream out = new PrintStream(new ByteArrayOutputStream());
+        List<LoadTestConfig> invalid = Arrays.asList(
+                SHORT_RUN.toBuilder().targetRate(0).build(),
+                SHORT_RUN.toBuilder().targetRate(-5).build(),
+                SHORT_RUN.toBuilder().targetRate(Double.NaN).build(),
+                SHORT_RUN.toBuilder().targetRate(2e9).build(),
+                SHORT_RUN.toBuilder().duration(Duration.ZERO).build(),
+                SHORT_RUN.toBuilder().reportInterval(Duration.ofSeconds(-1)).build());
+
+        // act
+        for (LoadTestConfig config : invalid) {
+            assertThrows(IllegalArgumentException.class, () -> new LoadTestRunner(config, out), config::toString);
+        }
+    }
+}
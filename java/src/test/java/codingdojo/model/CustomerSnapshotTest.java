@@ -0,0 +1,96 @@
+package codingdojo.model;
+
+import codingdojo.common.CustomerTestDataBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+public class CustomerSnapshotTest {
+
+    @Test
+    public void snapshotIsUnaffectedBySourceChanges() {
+        // arrange
+        Customer customer = CustomerTestDataBuilder.createCustomerWithSameCompanyAs(CustomerTestDataBuilder.createExternalCompany());
+        customer.setAddress(new Address("123 main st", "Helsingborg", "SE-123 45"));
+        customer.addShoppingList(new ShoppingList("lipstick"));
+
+        // act
+        CustomerSnapshot snapshot = CustomerSnapshot.of(customer);
+        customer.setName("Changed");
+        customer.getAddress().setCity("Malmo");
+        customer.addShoppingList(new ShoppingList("blusher"));
+
+        // assert
+        assertEquals(CustomerTestDataBuilder.INTERNAL_ID, snapshot.getInternalId());
+        assertEquals("Helsingborg", snapshot.getAddress().getCity());
+        assertEquals(1, snapshot.getShoppingLists().size());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getShoppingLists().add(new ShoppingList()));
+    }
+
+    @Test
+    public void withCreatesChangedCopy() {
+        // arrange
+        CustomerSnapshot snapshot = CustomerSnapshot.builder()
+                .externalId("12345")
+                .masterExternalId("12345")
+                .customerType(CustomerType.COMPANY)
+                .build();
+
+        // act
+        CustomerSnapshot detached = snapshot.withMasterExternalId(null).withAddedShoppingList(new ShoppingList("lipstick"));
+
+        // assert
+        assertEquals("12345", snapshot.getMasterExternalId());
+        assertEquals(0, snapshot.getShoppingLists().size());
+        assertNull(detached.getMasterExternalId());
+        assertEquals(Arrays.asList("lipstick"), detached.getShoppingLists().get(0).getProducts());
+    }
+
+    @Test
+    public void toCustomerReturnsIndependentMutableRecord() {
+        // arrange
+        CustomerSnapshot snapshot = CustomerSnapshot.builder()
+                .externalId("12345")
+                .address(AddressSnapshot.builder().city("Helsingborg").build())
+                .build();
+
+        // act
+        Customer first = snapshot.toCustomer();
+        Customer second = snapshot.toCustomer();
+        first.getAddress().setCity("Malmo");
+        first.addShoppingList(new ShoppingList("lipstick"));
+
+        // assert
+        assertNotSame(first, second);
+        assertEquals("Helsingborg", second.getAddress().getCity());
+        assertEquals(0, second.getShoppingLists().size());
+        assertEquals(CustomerSnapshot.of(second), snapshot);
+    }
+
+    @Test
+    public void roundTripKeepsEveryField() {
+        // arrange
+        Customer customer = CustomerTestDataBuilder.createCustomerWithSameCompanyAs(CustomerTestDataBuilder.createExternalCompany());
+        customer.setMasterExternalId("master-1");
+        customer.setPreferredStore("Nordstan");
+        customer.setBonusPointsBalance(42);
+        customer.setAddress(new Address("123 main st", "Helsingborg", "SE-123 45"));
+        customer.addShoppingList(new ShoppingList("lipstick", "blusher"));
+
+        // act
+        Customer roundTripped = CustomerSnapshot.of(customer).toCustomer();
+
+        // assert
+        assertEquals(CustomerSnapshot.of(customer), CustomerSnapshot.of(roundTripped));
+        assertEquals(customer.getAddress(), roundTripped.getAddress());
+        assertNotSame(customer.getAddress(), roundTripped.getAddress());
+        assertEquals(customer.getShoppingLists(), roundTripped.getShoppingLists());
+        assertEquals(42, roundTripped.getBonusPointsBalance());
+    }
+}
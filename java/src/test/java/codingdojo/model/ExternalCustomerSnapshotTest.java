@@ -0,0 +1,55 @@
+package codingdojo.model;
+
+import codingdojo.common.CustomerTestDataBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class ExternalCustomerSnapshotTest {
+
+    @Test
+    public void roundTripKeepsEveryField() {
+        // arrange
+        ExternalCustomer externalCustomer = CustomerTestDataBuilder.createExternalCompany();
+        externalCustomer.setPreferredStore("Nordstan");
+        externalCustomer.setBonusPointsBalance(42);
+        externalCustomer.setShoppingLists(Arrays.asList(new ShoppingList("lipstick"), new ShoppingList("blusher")));
+
+        // act
+        ExternalCustomerSnapshot snapshot = ExternalCustomerSnapshot.of(externalCustomer);
+        ExternalCustomer roundTripped = snapshot.toExternalCustomer();
+
+        // assert
+        assertEquals(externalCustomer, roundTripped);
+        assertNotSame(externalCustomer.getAddress(), roundTripped.getAddress());
+        assertTrue(snapshot.isCompany());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getShoppingLists().add(new ShoppingList()));
+    }
+
+    @Test
+    public void missingShoppingListsBecomeEmptyLikeCustomerSnapshot() {
+        // arrange
+        ExternalCustomer externalCustomer = CustomerTestDataBuilder.createExternalCustomer(false);
+        externalCustomer.setShoppingLists(null);
+        externalCustomer.setAddress(null);
+
+        // act
+        ExternalCustomerSnapshot snapshot = ExternalCustomerSnapshot.of(externalCustomer);
+        ExternalCustomer roundTripped = snapshot.toExternalCustomer();
+
+        // assert
+        assertEquals(Collections.emptyList(), snapshot.getShoppingLists());
+        assertEquals(Collections.emptyList(), roundTripped.getShoppingLists());
+        assertEquals(CustomerSnapshot.builder().build().getShoppingLists(), snapshot.getShoppingLists());
+        assertEquals(externalCustomer.getName(), roundTripped.getName());
+        assertNull(roundTripped.getAddress());
+    }
+}
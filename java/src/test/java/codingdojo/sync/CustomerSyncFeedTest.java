@@ -0,0 +1,47 @@
+package codingdojo.sync;
+
+import codingdojo.common.CustomerTestDataBuilder;
+import codingdojo.common.InMemoryCustomerDataLayer;
+import codingdojo.model.Customer;
+import codingdojo.model.CustomerType;
+import codingdojo.model.ExternalCustomer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+
+public class CustomerSyncFeedTest {
+
+    @Test
+    public void conflictingRecordDoesNotStopTheFeed() {
+        // arrange
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer();
+        Customer company = new Customer();
+        company.setExternalId("ext-1");
+        company.setCompanyNumber("111");
+        company.setCustomerType(CustomerType.COMPANY);
+        db.add(company);
+
+        ExternalCustomer newCompany = CustomerTestDataBuilder.createExternalCompany();
+        newCompany.setExternalId("new-1");
+        newCompany.setCompanyNumber("222");
+        ExternalCustomer conflictingPerson = CustomerTestDataBuilder.createExternalCustomer(false);
+        conflictingPerson.setExternalId("ext-1");
+        ExternalCustomer newPerson = CustomerTestDataBuilder.createExternalCustomer(false);
+        newPerson.setExternalId("p-1");
+
+        // act
+        FeedSyncResult result = new CustomerSync(db).syncFeed(
+                Arrays.asList(newCompany, conflictingPerson, newPerson).iterator());
+
+        // assert
+        assertEquals(3, result.getRecords());
+        assertEquals(2, result.getCreatedCustomers());
+        assertEquals(1, result.getConflictCount());
+        assertEquals(CustomerType.COMPANY, db.findByExternalId("ext-1").getCustomerType());
+        assertNotNull(db.findByExternalId("p-1"), "Records after the conflict should still be synced");
+    }
+}
@@ -0,0 +1,128 @@
+package codingdojo.sync;
+
+import codingdojo.common.CustomerTestDataBuilder;
+import codingdojo.common.InMemoryCustomerDataLayer;
+import codingdojo.model.ConflictException;
+import codingdojo.model.Customer;
+import codingdojo.model.CustomerType;
+import codingdojo.model.ExternalCustomer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+public class CustomerSyncPlanTest {
+
+    private InMemoryCustomerDataLayer db;
+    private CustomerSync customerSync;
+    private Customer existingCompany;
+
+    @BeforeEach
+    public void setup() {
+        db = new InMemoryCustomerDataLayer();
+        customerSync = new CustomerSync(db);
+
+        Customer company = new Customer();
+        company.setExternalId("ext-1");
+        company.setMasterExternalId("master-1");
+        company.setCompanyNumber("111");
+        company.setCustomerType(CustomerType.COMPANY);
+        existingCompany = db.add(company);
+    }
+
+    @Test
+    public void planReportsTotalsWithoutWriting() {
+        // arrange
+        int writesBefore = db.getWrites();
+
+        // act
+        SyncPlan plan = customerSync.plan(feed());
+
+        // assert
+        assertEquals(writesBefore, db.getWrites(), "Planning should not write to the store");
+        assertNotNull(db.findByMasterExternalId("master-1"), "Planning should not modify loaded customers");
+        assertEquals(3, plan.getRecords());
+        assertEquals(2, plan.getCreatedCustomers());
+        assertEquals(2, plan.getCreates());
+        assertEquals(3, plan.getUpdates());
+        assertEquals(2, plan.getShoppingListUpdates());
+        assertEquals(1, plan.getDuplicateDetachments());
+        assertEquals(1, plan.getConflictCount());
+    }
+
+    @Test
+    public void appliedPlanMatchesRealSync() {
+        // arrange
+        SyncPlan plan = customerSync.plan(feed());
+
+        // act
+        plan.apply(db);
+
+        // assert
+        assertEquals(3, db.size());
+        Customer detached = db.findByCompanyNumber("111");
+        assertEquals(existingCompany.getInternalId(), detached.getInternalId());
+        assertNull(detached.getMasterExternalId(), "Existing company should be detached from its master");
+        Customer person = db.findByExternalId("p-1");
+        assertEquals(CustomerType.PERSON, person.getCustomerType());
+        assertEquals(1, person.getShoppingLists().size(), "Created customer should receive its shopping lists");
+    }
+
+    @Test
+    public void laterRecordIsPlannedAgainstEarlierWrites() {
+        // arrange
+        ExternalCustomer newCompany = CustomerTestDataBuilder.createExternalCompany();
+        newCompany.setExternalId("new-1");
+        newCompany.setCompanyNumber("333");
+        ExternalCustomer personWithSameId = CustomerTestDataBuilder.createExternalCustomer(false);
+        personWithSameId.setExternalId("new-1");
+
+        // act
+        SyncPlan plan = customerSync.plan(Arrays.asList(newCompany, personWithSameId));
+        plan.apply(db);
+
+        // assert
+        assertEquals(1, plan.getCreatedCustomers());
+        assertEquals(1, plan.getConflictCount(), "The person should conflict with the company planned before it");
+        assertEquals(2, db.size());
+        assertEquals(CustomerType.COMPANY, db.findByExternalId("new-1").getCustomerType());
+    }
+
+    @Test
+    public void planIsRefusedWhenStoreChangedSincePlanning() {
+        // arrange
+        SyncPlan plan = customerSync.plan(feed());
+        Customer renamed = db.findByCompanyNumber("111");
+        renamed.setName("Renamed Inc.");
+        db.updateCustomerRecord(renamed);
+        int writesBefore = db.getWrites();
+
+        // act
+        assertThrows(ConflictException.class, () -> plan.apply(db));
+
+        // assert
+        assertEquals(writesBefore, db.getWrites(), "A stale plan should not write anything");
+        assertEquals(1, db.size());
+    }
+
+    private static List<ExternalCustomer> feed() {
+        ExternalCustomer movedCompany = CustomerTestDataBuilder.createExternalCompany();
+        movedCompany.setExternalId("ext-1");
+        movedCompany.setCompanyNumber("222");
+
+        ExternalCustomer newPerson = CustomerTestDataBuilder.createExternalCustomer(false);
+        newPerson.setExternalId("p-1");
+
+        ExternalCustomer conflictingPerson = CustomerTestDataBuilder.createExternalCustomer(false);
+        conflictingPerson.setExternalId("ext-1");
+
+        return Arrays.asList(movedCompany, newPerson, conflictingPerson);
+    }
+}
@@ -0,0 +1,187 @@
+package codingdojo.sync;
+
+import codingdojo.common.CustomerTestDataBuilder;
+import codingdojo.model.Address;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.ExternalCustomerSnapshot;
+import codingdojo.model.ShoppingList;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+public class ExternalCustomerAggregatorTest {
+
+    @Test
+    public void mergesRecordsForSameCustomerWithLastWinsFields() {
+        // arrange
+        ExternalCustomer first = externalCompany("1", "Old Name", "lipstick");
+        ExternalCustomer second = externalCompany("1", "New Name", "blusher");
+        second.setAddress(new Address("1 new st", "Malmo", "SE-211 20"));
+
+        // act
+        List<ExternalCustomer> aggregated = aggregate(new ExternalCustomerAggregator(), first, second);
+
+        // assert
+        assertEquals(1, aggregated.size());
+        ExternalCustomer merged = aggregated.get(0);
+        assertEquals("New Name", merged.getName());
+        assertEquals(second.getAddress(), merged.getAddress());
+        assertEquals(2, merged.getShoppingLists().size());
+        assertEquals(Arrays.asList("lipstick"), merged.getShoppingLists().get(0).getProducts());
+        assertEquals(Arrays.asList("blusher"), merged.getShoppingLists().get(1).getProducts());
+        assertEquals("Old Name", first.getName(), "Feed records should not be modified");
+    }
+
+    @Test
+    public void keepsDifferentCompanyNumbersApart() {
+        // arrange
+        ExternalCustomer company = externalCompany("1", "Acme", "lipstick");
+        ExternalCustomer person = CustomerTestDataBuilder.createExternalCustomer(false);
+        person.setExternalId("1");
+
+        // act
+        List<ExternalCustomer> aggregated = aggregate(new ExternalCustomerAggregator(), company, person);
+
+        // assert
+        assertEquals(2, aggregated.size());
+    }
+
+    @Test
+    public void spilledRunsMergeInFeedOrder() throws Exception {
+        // arrange
+        File spillDirectory = Files.createTempDirectory("aggregator-test").toFile();
+        ExternalCustomerAggregator aggregator = new ExternalCustomerAggregator(2, spillDirectory);
+        ExternalCustomer withoutLists = externalCompany("1", "Second", "unused");
+        withoutLists.setShoppingLists(null);
+        withoutLists.setAddress(null);
+
+        // act
+        List<ExternalCustomer> aggregated = aggregate(aggregator,
+                externalCompany("1", "First", "lipstick"),
+                externalCompany("2", "Other", "mascara"),
+                withoutLists,
+                externalCompany("3", "Third", "eyeliner"),
+                externalCompany("1", "Last", "blusher"));
+
+        // assert
+        assertEquals(3, aggregated.size());
+        ExternalCustomer merged = aggregated.get(0);
+        assertEquals("1", merged.getExternalId());
+        assertEquals("Last", merged.getName());
+        assertEquals(2, merged.getShoppingLists().size());
+        assertEquals(Arrays.asList("lipstick"), merged.getShoppingLists().get(0).getProducts());
+        assertEquals(Arrays.asList("blusher"), merged.getShoppingLists().get(1).getProducts());
+        assertEquals(0, spillDirectory.list().length, "Spill files should be removed");
+    }
+
+    @Test
+    public void emitsGroupsInFeedOrderRatherThanKeyOrder() throws Exception {
+        // arrange
+        ExternalCustomer companyB = externalCompany("1", "B", "lipstick");
+        companyB.setCompanyNumber("B");
+        ExternalCustomer companyA = externalCompany("1", "A", "blusher");
+        companyA.setCompanyNumber("A");
+        File spillDirectory = Files.createTempDirectory("aggregator-test").toFile();
+
+        // act
+        List<ExternalCustomer> inMemory = aggregate(new ExternalCustomerAggregator(), companyB, companyA);
+        List<ExternalCustomer> spilled = aggregate(new ExternalCustomerAggregator(1, spillDirectory), companyB, companyA);
+
+        // assert
+        assertEquals(Arrays.asList("B", "A"), companyNumbers(inMemory));
+        assertEquals(Arrays.asList("B", "A"), companyNumbers(spilled));
+    }
+
+    @Test
+    public void mergesOnlyRecordsWithoutAnotherCompanyNumberInBetween() throws Exception {
+        // arrange
+        ExternalCustomer first = externalCompany("X", "a", "lipstick");
+        first.setCompanyNumber("C1");
+        ExternalCustomer other = externalCompany("X", "b", "blusher");
+        other.setCompanyNumber("C2");
+        ExternalCustomer last = externalCompany("X", "c", "mascara");
+        last.setCompanyNumber("C1");
+        File spillDirectory = Files.createTempDirectory("aggregator-test").toFile();
+
+        // act
+        List<ExternalCustomer> inMemory = aggregate(new ExternalCustomerAggregator(), first, other, last);
+        List<ExternalCustomer> spilled = aggregate(new ExternalCustomerAggregator(1, spillDirectory), first, other, last);
+
+        // assert
+        for (List<ExternalCustomer> aggregated : Arrays.asList(inMemory, spilled)) {
+            assertEquals(Arrays.asList("C1", "C2", "C1"), companyNumbers(aggregated));
+            assertEquals("a", aggregated.get(0).getName());
+            assertEquals("c", aggregated.get(2).getName());
+        }
+    }
+
+    @Test
+    public void boundedFanInMergesManyRunsInFeedOrder() throws Exception {
+        // arrange
+        File spillDirectory = Files.createTempDirectory("aggregator-test").toFile();
+        ExternalCustomerAggregator aggregator = new ExternalCustomerAggregator(2, 2, spillDirectory);
+        List<ExternalCustomer> feed = new ArrayList<>();
+        for (int i = 20; i > 0; i--) {
+            feed.add(externalCompany(String.valueOf(i), "First " + i, "lipstick"));
+        }
+        for (int i = 20; i > 0; i--) {
+            feed.add(externalCompany(String.valueOf(i), "Last " + i, "blusher"));
+        }
+
+        // act
+        List<ExternalCustomer> aggregated = aggregate(aggregator, feed.toArray(new ExternalCustomer[0]));
+
+        // assert
+        assertEquals(20, aggregated.size());
+        for (int i = 0; i < 20; i++) {
+            ExternalCustomer merged = aggregated.get(i);
+            assertEquals(String.valueOf(20 - i), merged.getExternalId());
+            assertEquals("Last " + (20 - i), merged.getName());
+            assertEquals(2, merged.getShoppingLists().size());
+        }
+        assertEquals(0, spillDirectory.list().length, "Spill files should be removed");
+    }
+
+    @Test
+    public void mergeKeepsNullAddressFromLaterRecord() {
+        // arrange
+        ExternalCustomer earlier = externalCompany("1", "Acme", "lipstick");
+        ExternalCustomer later = externalCompany("1", "Acme", "blusher");
+        later.setAddress(null);
+
+        // act
+        ExternalCustomerSnapshot merged = ExternalCustomerAggregator.merge(
+                ExternalCustomerSnapshot.of(earlier), ExternalCustomerSnapshot.of(later));
+
+        // assert
+        assertNull(merged.getAddress());
+    }
+
+    private static ExternalCustomer externalCompany(String externalId, String name, String product) {
+        ExternalCustomer externalCustomer = CustomerTestDataBuilder.createExternalCompany();
+        externalCustomer.setExternalId(externalId);
+        externalCustomer.setName(name);
+        externalCustomer.setShoppingLists(Arrays.asList(new ShoppingList(product)));
+        return externalCustomer;
+    }
+
+    private static List<String> companyNumbers(List<ExternalCustomer> externalCustomers) {
+        List<String> companyNumbers = new ArrayList<>();
+        externalCustomers.forEach(externalCustomer -> companyNumbers.add(externalCustomer.getCompanyNumber()));
+        return companyNumbers;
+    }
+
+    private static List<ExternalCustomer> aggregate(ExternalCustomerAggregator aggregator, ExternalCustomer... feed) {
+        List<ExternalCustomer> aggregated = new ArrayList<>();
+        aggregator.aggregate(Arrays.asList(feed).iterator(), aggregated::add);
+        return aggregated;
+    }
+}